@@ -0,0 +1,99 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.duberlyguarnizo.dummyjson.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Entry point of the <i>bcryptCalibration</i> Gradle task. Measures how long one BCrypt hash takes on this host for
+ * every cost from {@code bcrypt.minStrength} up, and recommends the highest cost whose median stays within
+ * {@code bcrypt.targetMillis}; that is the value to use for <i>auth.password-hashing.bcrypt-strength</i>. Each cost
+ * doubles the time, so the measurement stops at the first cost that is well over the target.
+ */
+@Slf4j
+public class BcryptCalibration {
+    private static final String PASSWORD = "calibration-password";
+    private static final int MAX_STRENGTH = 16;
+
+    public static void main(String[] args) throws Exception {
+        double targetMillis = Double.parseDouble(System.getProperty("bcrypt.targetMillis", "100"));
+        int minStrength = Integer.getInteger("bcrypt.minStrength", 8);
+        int samples = Integer.getInteger("bcrypt.samples", 5);
+        Path output = Path.of(System.getProperty("bcrypt.output", "build/reports/bcrypt/results.json"));
+
+        measure(4, 200); //JIT warmup, otherwise the first cost measured looks slower than the next one
+        List<Map<String, Object>> costs = new ArrayList<>();
+        int recommended = minStrength;
+        for (int strength = minStrength; strength <= MAX_STRENGTH; strength++) {
+            double median = measure(strength, samples);
+            log.info("BCrypt cost {}: {} ms per hash", strength, String.format("%.1f", median));
+            Map<String, Object> cost = new LinkedHashMap<>();
+            cost.put("strength", strength);
+            cost.put("medianMillis", median);
+            costs.add(cost);
+            if (median <= targetMillis) {
+                recommended = strength;
+            } else {
+                break;
+            }
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("generatedAt", Instant.now().toString());
+        report.put("javaVersion", Runtime.version().toString());
+        report.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+        report.put("targetMillis", targetMillis);
+        report.put("samplesPerCost", samples);
+        report.put("costs", costs);
+        report.put("recommendedStrength", recommended);
+        Files.createDirectories(output.toAbsolutePath().getParent());
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(output.toFile(), report);
+        log.info("Recommended setting: auth.password-hashing.bcrypt-strength={} (report written to {})",
+                recommended, output.toAbsolutePath());
+    }
+
+    /**
+     * @return the median time of one hash, in milliseconds, after a discarded warmup hash.
+     */
+    private static double measure(int strength, int samples) {
+        var encoder = new BCryptPasswordEncoder(strength);
+        encoder.encode(PASSWORD);
+        double[] millis = new double[samples];
+        for (int i = 0; i < samples; i++) {
+            long start = System.nanoTime();
+            encoder.encode(PASSWORD);
+            millis[i] = (System.nanoTime() - start) / 1e6;
+        }
+        Arrays.sort(millis);
+        return millis[samples / 2];
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.duberlyguarnizo.dummyjson.loadtest;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Reads the HikariCP meters of the application under test around a scenario: how long requests waited for a
+ * connection (<i>hikaricp.connections.acquire</i>), how long they held it (<i>hikaricp.connections.usage</i>) and the
+ * peak number of threads queued for one (<i>hikaricp.connections.pending</i>, sampled every 10 ms).
+ */
+public class ConnectionPoolProbe {
+    private static final long SAMPLE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final MeterRegistry registry;
+
+    public ConnectionPoolProbe(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Starts observing the pool; the returned window is closed when the scenario ends.
+     */
+    public Window open() {
+        return new Window();
+    }
+
+    public class Window {
+        private final Snapshot acquire = snapshot("hikaricp.connections.acquire");
+        private final Snapshot usage = snapshot("hikaricp.connections.usage");
+        private final AtomicInteger maxPending = new AtomicInteger();
+        private final Thread sampler = new Thread(this::sample, "pool-probe");
+        private volatile boolean open = true;
+
+        private Window() {
+            sampler.setDaemon(true);
+            sampler.start();
+        }
+
+        private void sample() {
+            while (open) {
+                var pending = registry.find("hikaricp.connections.pending").gauge();
+                if (pending != null) {
+                    maxPending.accumulateAndGet((int) pending.value(), Math::max);
+                }
+                LockSupport.parkNanos(SAMPLE_INTERVAL_NANOS);
+            }
+        }
+
+        /**
+         * @return the pool statistics of the window. Times are in milliseconds, maxima are the ones of the
+         * meter's last distribution window rather than strictly of this scenario.
+         */
+        public Map<String, Object> close() throws InterruptedException {
+            open = false;
+            sampler.join();
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("acquire", snapshot("hikaricp.connections.acquire").since(acquire));
+            stats.put("usage", snapshot("hikaricp.connections.usage").since(usage));
+            stats.put("maxPending", maxPending.get());
+            return stats;
+        }
+    }
+
+    private Snapshot snapshot(String meter) {
+        Timer timer = registry.find(meter).timer();
+        if (timer == null) {
+            throw new IllegalStateException("Meter " + meter + " not found, is the pool a HikariDataSource?");
+        }
+        return new Snapshot(timer, timer.count(), timer.totalTime(TimeUnit.NANOSECONDS));
+    }
+
+    private record Snapshot(Timer timer, long count, double totalNanos) {
+        Map<String, Object> since(Snapshot start) {
+            long delta = count - start.count;
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("count", delta);
+            stats.put("meanMillis", delta == 0 ? 0 : (totalNanos - start.totalNanos) / delta / 1e6);
+            stats.put("maxMillis", timer.max(TimeUnit.MILLISECONDS));
+            return stats;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.duberlyguarnizo.dummyjson.loadtest;
+
+import com.duberlyguarnizo.dummyjson.appuser.AppUser;
+import com.duberlyguarnizo.dummyjson.appuser.AppUserRepository;
+import com.duberlyguarnizo.dummyjson.appuser.AppUserRole;
+import com.duberlyguarnizo.dummyjson.jsoncontent.JsonContent;
+import com.duberlyguarnizo.dummyjson.jsoncontent.JsonContentRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationContext;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Seeds the embedded database with the configured number of users and JsonContent rows, through the regular
+ * repositories so ids come from the same sequences the application uses.
+ */
+@Slf4j
+public class DatasetSeeder {
+    public static final String PASSWORD = "loadtest-password";
+    private static final int BATCH_SIZE = 500;
+
+    private final AppUserRepository userRepository;
+    private final JsonContentRepository contentRepository;
+    private final PasswordEncoder passwordEncoder;
+
+    public DatasetSeeder(ApplicationContext context) {
+        this.userRepository = context.getBean(AppUserRepository.class);
+        this.contentRepository = context.getBean(JsonContentRepository.class);
+        this.passwordEncoder = context.getBean(PasswordEncoder.class);
+    }
+
+    /**
+     * @return the seeded dataset: usernames (all sharing {@link #PASSWORD}) and the ids of every JsonContent row.
+     */
+    public Dataset seed(LoadTestSettings settings) {
+        String passwordHash = passwordEncoder.encode(PASSWORD); //hash once, BCrypt per row would dominate seeding
+        List<AppUser> users = new ArrayList<>();
+        for (int i = 0; i < settings.users(); i++) {
+            users.add(AppUser.builder()
+                    .names("load test user " + i)
+                    .username("loadtest-user-" + i)
+                    .email("loadtest-user-" + i + "@loadtest.local")
+                    .idCard("LT-" + i)
+                    .password(passwordHash)
+                    .role(AppUserRole.USER)
+                    .active(true)
+                    .locked(false)
+                    .build());
+        }
+        users = userRepository.saveAll(users);
+
+        List<Long> contentIds = new ArrayList<>();
+        List<JsonContent> batch = new ArrayList<>(BATCH_SIZE);
+        for (AppUser user : users) {
+            for (int j = 0; j < settings.contentPerUser(); j++) {
+                JsonContent content = JsonContent.builder()
+                        .name("seed " + user.getId() + "-" + j)
+                        .json("{\"user\":" + user.getId() + ",\"item\":" + j + "}")
+                        .path("/seed/" + user.getId() + "/" + j)
+                        .build();
+                content.setCreatedBy(user.getId());
+                batch.add(content);
+                if (batch.size() == BATCH_SIZE) {
+                    contentRepository.saveAll(batch).forEach(c -> contentIds.add(c.getId()));
+                    batch.clear();
+                }
+            }
+        }
+        contentRepository.saveAll(batch).forEach(c -> contentIds.add(c.getId()));
+        log.info("Seeded {} users and {} JSON contents", users.size(), contentIds.size());
+        return new Dataset(users.stream().map(AppUser::getUsername).toList(), contentIds);
+    }
+
+    public record Dataset(List<String> usernames, List<Long> contentIds) {
+    }
+}
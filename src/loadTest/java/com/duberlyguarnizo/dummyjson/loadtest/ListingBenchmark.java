@@ -0,0 +1,203 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.duberlyguarnizo.dummyjson.loadtest;
+
+import com.duberlyguarnizo.dummyjson.DummyJsonApplication;
+import com.duberlyguarnizo.dummyjson.appuser.AppUser;
+import com.duberlyguarnizo.dummyjson.appuser.AppUserRepository;
+import com.duberlyguarnizo.dummyjson.appuser.AppUserRole;
+import com.duberlyguarnizo.dummyjson.jsoncontent.JsonContent;
+import com.duberlyguarnizo.dummyjson.jsoncontent.JsonContentRepository;
+import com.duberlyguarnizo.dummyjson.jsoncontent.dto.JsonContentBasicDto;
+import com.duberlyguarnizo.dummyjson.jsoncontent.dto.JsonContentMapper;
+import com.duberlyguarnizo.dummyjson.util.PageResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Entry point of the <i>listingBenchmark</i> Gradle task. Boots the application with the <i>loadtest</i> profile,
+ * seeds JSON contents with bodies of {@code listing.jsonLength} characters, and compares the listing as it was
+ * (entities mapped to {@link JsonContentBasicDto}, serialized as a PageImpl) with the metadata projection serialized
+ * as a {@link PageResponse}. For each variant it reports, per page:
+ * <ul>
+ *     <li>the characters of the columns read from the database (the json body is most of it);</li>
+ *     <li>the bytes allocated by the thread that runs the query and serializes the response;</li>
+ *     <li>the bytes of the JSON response.</li>
+ * </ul>
+ */
+@Slf4j
+public class ListingBenchmark {
+    private static final Sort SORT = Sort.by(Sort.Direction.DESC, "id"); //the default sort of the listings
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws Exception {
+        int rows = Integer.getInteger("listing.rows", 5000);
+        int jsonLength = Integer.getInteger("listing.jsonLength", 2000);
+        int pageSize = Integer.getInteger("listing.pageSize", 15);
+        int iterations = Integer.getInteger("listing.iterations", 2000);
+        Path output = Path.of(System.getProperty("listing.output", "build/reports/listing/results.json"));
+
+        SpringApplication application = new SpringApplication(DummyJsonApplication.class);
+        application.setAdditionalProfiles("loadtest");
+        int exitCode = 0;
+        try (ConfigurableApplicationContext context = application.run("--server.port=0")) {
+            var repository = context.getBean(JsonContentRepository.class);
+            var mapper = context.getBean(JsonContentMapper.class);
+            var objectMapper = context.getBean(ObjectMapper.class);
+            Long ownerId = seed(context, rows, jsonLength);
+            int pages = Math.max(1, rows / pageSize);
+
+            Map<String, Object> variants = new LinkedHashMap<>();
+            variants.put("entity", measure("entity", iterations, pages, page -> {
+                Page<JsonContent> entities = repository.findAll(PageRequest.of(page, pageSize, SORT));
+                long chars = entities.stream().mapToLong(ListingBenchmark::columnChars).sum();
+                return new Sample(chars, write(objectMapper, entities.map(mapper::toBasicDto)));
+            }));
+            variants.put("projection", measure("projection", iterations, pages, page -> {
+                Page<JsonContentBasicDto> dtos = repository.findAllBasic(PageRequest.of(page, pageSize, SORT));
+                long chars = dtos.stream().mapToLong(ListingBenchmark::columnChars).sum();
+                return new Sample(chars, write(objectMapper, PageResponse.of(dtos)));
+            }));
+            variants.put("projectionByOwner", measure("projectionByOwner", iterations, pages, page -> {
+                Page<JsonContentBasicDto> dtos = repository.findBasicByCreatedBy(ownerId, PageRequest.of(page, pageSize, SORT));
+                long chars = dtos.stream().mapToLong(ListingBenchmark::columnChars).sum();
+                return new Sample(chars, write(objectMapper, PageResponse.of(dtos)));
+            }));
+
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("generatedAt", Instant.now().toString());
+            report.put("javaVersion", Runtime.version().toString());
+            report.put("rows", rows);
+            report.put("jsonLength", jsonLength);
+            report.put("pageSize", pageSize);
+            report.put("iterations", iterations);
+            report.put("variants", variants);
+            Files.createDirectories(output.toAbsolutePath().getParent());
+            new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(output.toFile(), report);
+            log.info("Listing benchmark report written to {}", output.toAbsolutePath());
+        } catch (Exception e) {
+            log.error("Listing benchmark failed", e);
+            exitCode = 1;
+        }
+        System.exit(exitCode);
+    }
+
+    private static Long seed(ConfigurableApplicationContext context, int rows, int jsonLength) {
+        AppUser owner = context.getBean(AppUserRepository.class).save(AppUser.builder()
+                .names("listing benchmark user")
+                .username("listing-benchmark")
+                .email("listing-benchmark@loadtest.local")
+                .idCard("LB-1")
+                .password("not used")
+                .role(AppUserRole.USER)
+                .active(true)
+                .locked(false)
+                .build());
+        var repository = context.getBean(JsonContentRepository.class);
+        String json = "{\"body\":\"" + "x".repeat(Math.max(0, jsonLength - 11)) + "\"}";
+        List<JsonContent> batch = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            JsonContent content = JsonContent.builder()
+                    .name("listing " + i)
+                    .json(json)
+                    .path("/listing/" + i)
+                    .build();
+            content.setCreatedBy(owner.getId());
+            batch.add(content);
+            if (batch.size() == 500) {
+                repository.saveAll(batch);
+                batch.clear();
+            }
+        }
+        repository.saveAll(batch);
+        log.info("Seeded {} JSON contents of {} characters", rows, json.length());
+        return owner.getId();
+    }
+
+    /**
+     * Runs a warmup of the same length as the measurement (for the JIT), then the measured iterations over every
+     * page in turn.
+     */
+    private static Map<String, Object> measure(String name, int iterations, int pages, IntFunction<Sample> listing) {
+        for (int i = 0; i < iterations; i++) {
+            listing.apply(i % pages);
+        }
+        long chars = 0;
+        long responseBytes = 0;
+        long allocatedBefore = THREADS.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            Sample sample = listing.apply(i % pages);
+            chars += sample.columnChars();
+            responseBytes += sample.responseBytes();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = THREADS.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("columnCharsPerPage", chars / iterations);
+        result.put("allocatedBytesPerPage", allocated / iterations);
+        result.put("responseBytesPerPage", responseBytes / iterations);
+        result.put("microsPerPage", elapsed / 1000 / iterations);
+        log.info("{}: {}", name, result);
+        return result;
+    }
+
+    private static long columnChars(JsonContent content) {
+        return 8 + length(content.getName()) + length(content.getJson()) + length(content.getPath())
+                + 8 + 8 + 8 + 8; //created/modified by and dates
+    }
+
+    private static long columnChars(JsonContentBasicDto dto) {
+        return 8 + length(dto.getName()) + length(dto.getPath());
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    private static int write(ObjectMapper objectMapper, Object body) {
+        try {
+            return objectMapper.writeValueAsBytes(body).length;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Sample(long columnChars, int responseBytes) {
+    }
+}
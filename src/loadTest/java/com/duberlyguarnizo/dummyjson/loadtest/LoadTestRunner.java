@@ -0,0 +1,210 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.duberlyguarnizo.dummyjson.loadtest;
+
+import com.duberlyguarnizo.dummyjson.DummyJsonApplication;
+import com.duberlyguarnizo.dummyjson.loadtest.OpenModelLoadGenerator.ScenarioResult;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.function.LongFunction;
+
+/**
+ * Entry point of the <i>loadTest</i> Gradle task. Boots the application with the <i>loadtest</i> profile (H2 in
+ * PostgreSQL mode, no Docker), seeds it, and measures the public GET, authenticated list/create and login flows.
+ * The report is a JSON file with throughput and latency percentiles per scenario, and the connection pool wait and
+ * usage times of each one.
+ * <p>
+ * System properties starting with <i>loadtest.app.</i> are passed to the application without that prefix, e.g.
+ * <i>-Ploadtest.app.spring.jpa.open-in-view=true</i> to compare a configuration against the default one.
+ */
+@Slf4j
+public class LoadTestRunner {
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(20);
+    private static final String APP_PROPERTY_PREFIX = "loadtest.app.";
+
+    private final LoadTestSettings settings;
+    private final HttpClient client;
+    private final String baseUrl;
+    private final ConnectionPoolProbe pool;
+    private final Map<String, Object> poolStats = new LinkedHashMap<>();
+
+    LoadTestRunner(LoadTestSettings settings, HttpClient client, int port, ConnectionPoolProbe pool) {
+        this.settings = settings;
+        this.client = client;
+        this.baseUrl = "http://localhost:" + port;
+        this.pool = pool;
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestSettings settings = LoadTestSettings.fromSystemProperties();
+        SpringApplication application = new SpringApplication(DummyJsonApplication.class);
+        application.setAdditionalProfiles("loadtest");
+        ConfigurableApplicationContext context = application.run(applicationArgs());
+        int exitCode = 0;
+        try {
+            var dataset = new DatasetSeeder(context).seed(settings);
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            HttpClient client = HttpClient.newBuilder()
+                    .executor(Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 2))
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .build();
+            var pool = new ConnectionPoolProbe(context.getBean(MeterRegistry.class));
+            new LoadTestRunner(settings, client, port, pool).runAll(dataset);
+        } catch (Exception e) {
+            log.error("Load test failed", e);
+            exitCode = 1;
+        } finally {
+            exitCode = SpringApplication.exit(context, () -> 0) + exitCode;
+        }
+        System.exit(exitCode);
+    }
+
+    private static String[] applicationArgs() {
+        List<String> args = new ArrayList<>();
+        args.add("--server.port=0");
+        System.getProperties().stringPropertyNames().stream()
+                .filter(name -> name.startsWith(APP_PROPERTY_PREFIX))
+                .sorted()
+                .forEach(name -> args.add("--" + name.substring(APP_PROPERTY_PREFIX.length()) + "=" + System.getProperty(name)));
+        return args.toArray(String[]::new);
+    }
+
+    void runAll(DatasetSeeder.Dataset dataset) throws IOException, InterruptedException {
+        List<String> tokens = new ArrayList<>();
+        for (String username : dataset.usernames()) {
+            tokens.add(login(username));
+        }
+        List<Long> ids = dataset.contentIds();
+        List<String> names = dataset.usernames();
+
+        List<ScenarioResult> results = new ArrayList<>();
+        scenario(results, "public-get", settings.rate(), phase ->
+                i -> get("/api/v1/public/json/" + ids.get((int) (i % ids.size())), null));
+        scenario(results, "authenticated-list", settings.rate(), phase ->
+                i -> get("/api/v1/authenticated/json?page=0&size=15", tokens.get((int) (i % tokens.size()))));
+        scenario(results, "authenticated-create", settings.rate(), phase ->
+                i -> post("/api/v1/authenticated/json",
+                        "{\"name\":\"" + phase + "-" + i + "\",\"json\":\"{\\\"n\\\":" + i + "}\"}",
+                        tokens.get((int) (i % tokens.size()))));
+        scenario(results, "login", settings.loginRate(), phase ->
+                i -> post("/api/v1/auth/authenticate", credentials(names.get((int) (i % names.size()))), null));
+        writeReport(results);
+    }
+
+    /**
+     * Runs the warmup (discarded) and then the measured phase of one scenario. The factory receives the phase
+     * name so requests that must be unique, like content creation, don't collide between phases.
+     */
+    private void scenario(List<ScenarioResult> results, String name, int rate, PhaseRequests requests)
+            throws InterruptedException {
+        if (!settings.runs(name)) {
+            return;
+        }
+        var generator = new OpenModelLoadGenerator(client);
+        if (!settings.warmup().isZero()) {
+            generator.run(name, rate, settings.warmup(), requests.forPhase("warmup"));
+        }
+        var window = pool.open();
+        ScenarioResult result = generator.run(name, rate, settings.duration(), requests.forPhase("measure"));
+        poolStats.put(name, window.close());
+        log.info("{}, connection pool {}", result, poolStats.get(name));
+        results.add(result);
+    }
+
+    private String login(String username) throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(
+                post("/api/v1/auth/authenticate", credentials(username), null),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Login of " + username + " failed with status " + response.statusCode());
+        }
+        JsonNode body = MAPPER.readTree(response.body());
+        return body.get("jwt").asText();
+    }
+
+    private static String credentials(String username) {
+        return "{\"username\":\"" + username + "\",\"password\":\"" + DatasetSeeder.PASSWORD + "\"}";
+    }
+
+    private HttpRequest get(String path, String token) {
+        var builder = HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(REQUEST_TIMEOUT).GET();
+        if (token != null) {
+            builder.header("authorization", "Bearer " + token);
+        }
+        return builder.build();
+    }
+
+    private HttpRequest post(String path, String body, String token) {
+        var builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+        if (token != null) {
+            builder.header("authorization", "Bearer " + token);
+        }
+        return builder.build();
+    }
+
+    private void writeReport(List<ScenarioResult> results) throws IOException {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("generatedAt", Instant.now().toString());
+        report.put("javaVersion", Runtime.version().toString());
+        report.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+        report.put("settings", Map.of(
+                "users", settings.users(),
+                "contentPerUser", settings.contentPerUser(),
+                "rate", settings.rate(),
+                "loginRate", settings.loginRate(),
+                "durationSeconds", settings.duration().toSeconds(),
+                "warmupSeconds", settings.warmup().toSeconds(),
+                "scenarios", settings.scenarios()));
+        report.put("applicationArgs", applicationArgs());
+        report.put("scenarios", results);
+        report.put("connectionPool", poolStats);
+        Files.createDirectories(settings.output().toAbsolutePath().getParent());
+        MAPPER.writeValue(settings.output().toFile(), report);
+        log.info("Load test report written to {}", settings.output().toAbsolutePath());
+    }
+
+    @FunctionalInterface
+    private interface PhaseRequests {
+        LongFunction<HttpRequest> forPhase(String phase);
+    }
+}
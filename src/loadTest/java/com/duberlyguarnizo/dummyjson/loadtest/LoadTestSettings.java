@@ -0,0 +1,67 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.duberlyguarnizo.dummyjson.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Settings of a load test run, read from system properties (the Gradle task forwards every
+ * <i>-Ploadtest.*</i> project property as a system property).
+ *
+ * @param users          number of USER accounts seeded (each one logs in once before the scenarios run).
+ * @param contentPerUser number of JsonContent rows seeded per user.
+ * @param rate           target arrival rate, in requests per second, for the read and create scenarios.
+ * @param loginRate      target arrival rate for the login scenario (every login is a BCrypt verification).
+ * @param duration       measured duration of each scenario.
+ * @param warmup         unmeasured duration run before each scenario.
+ * @param scenarios      names of the scenarios to run, all of them when empty.
+ * @param output         file where the machine-readable report is written.
+ */
+public record LoadTestSettings(int users,
+                               int contentPerUser,
+                               int rate,
+                               int loginRate,
+                               Duration duration,
+                               Duration warmup,
+                               Set<String> scenarios,
+                               Path output) {
+
+    public boolean runs(String scenario) {
+        return scenarios.isEmpty() || scenarios.contains(scenario);
+    }
+
+    public static LoadTestSettings fromSystemProperties() {
+        return new LoadTestSettings(
+                Integer.getInteger("loadtest.users", 20),
+                Integer.getInteger("loadtest.contentPerUser", 50),
+                Integer.getInteger("loadtest.rate", 100),
+                Integer.getInteger("loadtest.loginRate", 20),
+                Duration.ofSeconds(Integer.getInteger("loadtest.durationSeconds", 20)),
+                Duration.ofSeconds(Integer.getInteger("loadtest.warmupSeconds", 5)),
+                Arrays.stream(System.getProperty("loadtest.scenarios", "").split(","))
+                        .map(String::trim)
+                        .filter(s -> !s.isEmpty())
+                        .collect(Collectors.toSet()),
+                Path.of(System.getProperty("loadtest.output", "build/reports/loadtest/results.json")));
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.duberlyguarnizo.dummyjson.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongFunction;
+
+/**
+ * Open-model load generator: requests are started at a fixed arrival rate whether previous requests have completed
+ * or not, so a slow server builds up a queue instead of slowing the generator down. Latency is measured from the
+ * <b>intended</b> start time of each request, which keeps the percentiles free of coordinated omission.
+ */
+@Slf4j
+public class OpenModelLoadGenerator {
+    private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(30);
+    private final HttpClient client;
+
+    public OpenModelLoadGenerator(HttpClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Runs one scenario.
+     *
+     * @param name     the scenario name, as written in the report.
+     * @param rate     arrivals per second.
+     * @param duration how long arrivals are generated.
+     * @param requests builds the n-th request of the scenario.
+     * @return the scenario statistics, including requests that did not complete before the drain timeout as errors.
+     */
+    public ScenarioResult run(String name, int rate, Duration duration, LongFunction<HttpRequest> requests) {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        int total = (int) (duration.toNanos() / intervalNanos);
+        long[] latencies = new long[total];
+        boolean[] failed = new boolean[total];
+        List<CompletableFuture<?>> inFlight = new ArrayList<>(total);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < total; i++) {
+            final int index = i;
+            final long intendedStart = start + i * intervalNanos;
+            long wait = intendedStart - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            inFlight.add(client
+                    .sendAsync(requests.apply(i), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        latencies[index] = System.nanoTime() - intendedStart;
+                        failed[index] = error != null || response.statusCode() >= 400;
+                    }));
+        }
+        int timedOut = drain(name, inFlight);
+        long elapsed = System.nanoTime() - start;
+        return ScenarioResult.of(name, rate, duration, elapsed, latencies, failed, timedOut);
+    }
+
+    private int drain(String name, List<CompletableFuture<?>> inFlight) {
+        try {
+            CompletableFuture.allOf(inFlight.toArray(new CompletableFuture[0]))
+                    .exceptionally(e -> null) //failures are already recorded per request
+                    .get(DRAIN_TIMEOUT.toSeconds(), TimeUnit.SECONDS);
+            return 0;
+        } catch (TimeoutException e) {
+            long pending = inFlight.stream().filter(f -> !f.isDone()).count();
+            log.warn("Scenario {}: {} requests still pending after {}", name, pending, DRAIN_TIMEOUT);
+            return (int) pending;
+        } catch (ExecutionException e) {
+            return 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return (int) inFlight.stream().filter(f -> !f.isDone()).count();
+        }
+    }
+
+    /**
+     * Statistics of a finished scenario. Latencies are in milliseconds.
+     */
+    public record ScenarioResult(String name,
+                                 int targetRate,
+                                 long durationSeconds,
+                                 int requests,
+                                 int errors,
+                                 double throughput,
+                                 double p50,
+                                 double p90,
+                                 double p99,
+                                 double p999,
+                                 double max,
+                                 double mean) {
+
+        static ScenarioResult of(String name, int rate, Duration duration, long elapsedNanos,
+                                 long[] latencies, boolean[] failed, int timedOut) {
+            int errors = timedOut;
+            for (boolean f : failed) {
+                if (f) errors++;
+            }
+            long[] sorted = Arrays.stream(latencies).filter(l -> l > 0).sorted().toArray();
+            double completedPerSecond = sorted.length / (elapsedNanos / 1e9);
+            return new ScenarioResult(name,
+                    rate,
+                    duration.toSeconds(),
+                    latencies.length,
+                    errors,
+                    completedPerSecond,
+                    percentile(sorted, 0.50),
+                    percentile(sorted, 0.90),
+                    percentile(sorted, 0.99),
+                    percentile(sorted, 0.999),
+                    sorted.length == 0 ? 0 : toMillis(sorted[sorted.length - 1]),
+                    toMillis((long) Arrays.stream(sorted).average().orElse(0)));
+        }
+
+        private static double percentile(long[] sorted, double quantile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(quantile * sorted.length) - 1;
+            return toMillis(sorted[Math.max(0, index)]);
+        }
+
+        private static double toMillis(long nanos) {
+            return nanos / 1e6;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.duberlyguarnizo.dummyjson.loadtest;
+
+import com.duberlyguarnizo.dummyjson.DummyJsonApplication;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Entry point of the <i>startupBenchmark</i> Gradle task. Starts the application as a child JVM several times per
+ * mode and measures the startup time reported by Spring Boot and the time until the first request is served:
+ * <ul>
+ *     <li><b>baseline</b>: regular startup.</li>
+ *     <li><b>cds</b>: with an AppCDS archive created from a training run.</li>
+ *     <li><b>aot</b>: with the bean definitions generated by Spring AOT (<i>-Dspring.aot.enabled=true</i>).</li>
+ *     <li><b>aot-cds</b>: both, with a training run made in AOT mode (it loads a different set of classes).</li>
+ * </ul>
+ * The application runs with the <i>loadtest</i> profile, so no Docker or external database is needed.
+ */
+@Slf4j
+public class StartupBenchmark {
+    private static final Pattern STARTED = Pattern.compile(
+            "Started " + DummyJsonApplication.class.getSimpleName() + " in ([0-9.]+) seconds \\(process running for ([0-9.]+)\\)");
+    private static final String FIRST_REQUEST_PATH = "/api/v1/test/public-endpoint";
+    private static final Duration START_TIMEOUT = Duration.ofMinutes(2);
+    private static final List<String> AOT = List.of("-Dspring.aot.enabled=true");
+
+    private final Path libDir;
+    private final Path workDir;
+    private final int runs;
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+
+    StartupBenchmark(Path libDir, Path workDir, int runs) {
+        this.libDir = libDir;
+        this.workDir = workDir;
+        this.runs = runs;
+    }
+
+    public static void main(String[] args) throws Exception {
+        var benchmark = new StartupBenchmark(
+                Path.of(System.getProperty("startup.lib", "build/startup/lib")),
+                Path.of(System.getProperty("startup.work", "build/startup")),
+                Integer.getInteger("startup.runs", 5));
+        Path output = Path.of(System.getProperty("startup.output", "build/reports/startup/results.json"));
+
+        Path archive = benchmark.train("app.jsa", List.of());
+        Path aotArchive = benchmark.train("app-aot.jsa", AOT);
+
+        Map<String, Object> modes = new LinkedHashMap<>();
+        modes.put("baseline", benchmark.measure("baseline", List.of()));
+        modes.put("cds", benchmark.measure("cds", List.of("-XX:SharedArchiveFile=" + archive)));
+        modes.put("aot", benchmark.measure("aot", AOT));
+        modes.put("aot-cds", benchmark.measure("aot-cds",
+                Stream.concat(AOT.stream(), Stream.of("-XX:SharedArchiveFile=" + aotArchive)).toList()));
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("generatedAt", Instant.now().toString());
+        report.put("javaVersion", Runtime.version().toString());
+        report.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+        report.put("runsPerMode", benchmark.runs);
+        report.put("modes", modes);
+        Files.createDirectories(output.toAbsolutePath().getParent());
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(output.toFile(), report);
+        log.info("Startup benchmark report written to {}", output.toAbsolutePath());
+    }
+
+    /**
+     * Training run: starts the application, serves the first request and stops it gracefully, so the JVM dumps every
+     * class loaded on the startup and first-request paths into a dynamic AppCDS archive.
+     */
+    Path train(String archiveName, List<String> jvmArgs) throws IOException, InterruptedException {
+        Path archive = workDir.resolve(archiveName).toAbsolutePath();
+        Files.deleteIfExists(archive);
+        List<String> trainingArgs = new ArrayList<>(jvmArgs);
+        trainingArgs.add("-XX:ArchiveClassesAtExit=" + archive);
+        start("training-" + archiveName, trainingArgs);
+        if (!Files.exists(archive)) {
+            throw new IllegalStateException("The training run did not create the CDS archive " + archive);
+        }
+        return archive;
+    }
+
+    Map<String, Object> measure(String mode, List<String> jvmArgs) throws IOException, InterruptedException {
+        List<Run> results = new ArrayList<>();
+        for (int i = 0; i < runs; i++) {
+            Run run = start(mode + "-" + i, jvmArgs);
+            log.info("{} run {}: started in {} s, first request after {} ms", mode, i, run.startedSeconds, run.firstRequestMillis);
+            results.add(run);
+        }
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("jvmArgs", jvmArgs);
+        summary.put("startupSeconds", stats(results.stream().mapToDouble(Run::startedSeconds).toArray()));
+        summary.put("processUptimeSeconds", stats(results.stream().mapToDouble(Run::uptimeSeconds).toArray()));
+        summary.put("timeToFirstRequestMillis", stats(results.stream().mapToDouble(Run::firstRequestMillis).toArray()));
+        return summary;
+    }
+
+    /**
+     * Starts the application, waits until the first request is served and then stops it (SIGTERM, so shutdown
+     * hooks and the CDS dump still run).
+     */
+    private Run start(String name, List<String> jvmArgs) throws IOException, InterruptedException {
+        int port = freePort();
+        Path logFile = workDir.resolve("logs").resolve(name + ".log");
+        Files.createDirectories(logFile.getParent());
+
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmArgs);
+        command.add("-cp");
+        command.add(classpath());
+        command.add(DummyJsonApplication.class.getName());
+        command.add("--spring.profiles.active=loadtest");
+        command.add("--server.port=" + port);
+
+        long launched = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(logFile.toFile())
+                .start();
+        try {
+            long firstRequestNanos = waitForFirstRequest(process, port) - launched;
+            process.destroy();
+            if (!process.waitFor(START_TIMEOUT.toSeconds(), TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Run " + name + " did not stop, see " + logFile);
+            }
+            Matcher matcher = STARTED.matcher(Files.readString(logFile));
+            if (!matcher.find()) {
+                throw new IllegalStateException("Run " + name + " did not log its startup time, see " + logFile);
+            }
+            return new Run(Double.parseDouble(matcher.group(1)),
+                    Double.parseDouble(matcher.group(2)),
+                    firstRequestNanos / 1e6);
+        } finally {
+            process.destroyForcibly();
+        }
+    }
+
+    private long waitForFirstRequest(Process process, int port) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + FIRST_REQUEST_PATH)).build();
+        long deadline = System.nanoTime() + START_TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("The application exited with code " + process.exitValue());
+            }
+            try {
+                if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return System.nanoTime();
+                }
+            } catch (ConnectException e) {
+                //not listening yet
+            }
+            TimeUnit.MILLISECONDS.sleep(5);
+        }
+        throw new IllegalStateException("The application did not serve a request within " + START_TIMEOUT);
+    }
+
+    /**
+     * CDS only archives classes loaded from jar files, and the class path must be identical between the training
+     * and the measured runs, so it is built from the sorted jars of the startup layout.
+     */
+    private String classpath() throws IOException {
+        try (Stream<Path> jars = Files.list(libDir)) {
+            return jars.filter(p -> p.toString().endsWith(".jar"))
+                    .map(p -> p.toAbsolutePath().toString())
+                    .sorted()
+                    .reduce((a, b) -> a + File.pathSeparator + b)
+                    .orElseThrow(() -> new IllegalStateException("No jars found in " + libDir));
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static Map<String, Double> stats(double[] values) {
+        double[] sorted = Arrays.stream(values).sorted().toArray();
+        Map<String, Double> stats = new LinkedHashMap<>();
+        stats.put("min", sorted[0]);
+        stats.put("median", sorted[sorted.length / 2]);
+        stats.put("max", sorted[sorted.length - 1]);
+        stats.put("mean", Arrays.stream(sorted).average().orElse(0));
+        return stats;
+    }
+
+    private record Run(double startedSeconds, double uptimeSeconds, double firstRequestMillis) {
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.duberlyguarnizo.dummyjson.loadtest;
+
+import com.duberlyguarnizo.dummyjson.security.TokenDigests;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Entry point of the <i>tokenIndexBenchmark</i> Gradle task. Compares the two keys of the <i>jwt_token</i> unique
+ * index on PostgreSQL: the compact JWT as <i>varchar</i> (before V5) and its SHA-256 digest as <i>bytea</i> (after).
+ * Both tables are filled server-side with the same synthetic ES256-sized JWTs, the digest table with the same
+ * expression the V5 migration uses, and the report has the index sizes and the latency of lookups by token through
+ * JDBC (the digest lookup includes hashing the token). The tables live in a scratch schema that is dropped at the end.
+ */
+@Slf4j
+public class TokenIndexBenchmark {
+    private static final String SCHEMA = "token_index_benchmark";
+    // header of an ES256 token with a kid, identical in every token signed with the same key
+    private static final String JWT_HEADER = "eyJraWQiOiI4X0JjaVYzM2pKUHRRbFNBNzZDZDNial9PNEkxdENPamJUOWZ4SFJJTVBJIiwiYWxnIjoiRVMyNTYifQ";
+
+    private final Connection connection;
+    private final int rows;
+    private final int lookups;
+    private final Random random = new Random(42);
+
+    TokenIndexBenchmark(Connection connection, int rows, int lookups) {
+        this.connection = connection;
+        this.rows = rows;
+        this.lookups = lookups;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String url = System.getProperty("tokenindex.url", "jdbc:postgresql://localhost:5432/dummy-json");
+        int rows = Integer.getInteger("tokenindex.rows", 10_000_000);
+        int lookups = Integer.getInteger("tokenindex.lookups", 100_000);
+        Path output = Path.of(System.getProperty("tokenindex.output", "build/reports/token-index/results.json"));
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("generatedAt", Instant.now().toString());
+        report.put("rows", rows);
+        report.put("lookups", lookups);
+        try (Connection connection = DriverManager.getConnection(url,
+                System.getProperty("tokenindex.user", "postgres"),
+                System.getProperty("tokenindex.password", "password"))) {
+            var benchmark = new TokenIndexBenchmark(connection, rows, lookups);
+            report.put("postgresVersion", connection.getMetaData().getDatabaseProductVersion());
+            try {
+                benchmark.createTables();
+                List<String> tokens = benchmark.sampleTokens();
+                report.put("jwtString", benchmark.measure("jwt_string", "token", tokens, token -> token));
+                report.put("tokenDigest", benchmark.measure("token_digest", "token_digest", tokens, TokenDigests::sha256));
+            } finally {
+                benchmark.execute("drop schema if exists " + SCHEMA + " cascade");
+            }
+        }
+        Files.createDirectories(output.toAbsolutePath().getParent());
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(output.toFile(), report);
+        log.info("Token index benchmark report written to {}", output.toAbsolutePath());
+    }
+
+    void createTables() throws SQLException {
+        execute("drop schema if exists " + SCHEMA + " cascade");
+        execute("create schema " + SCHEMA);
+        execute("create table " + SCHEMA + ".jwt_string (id bigint primary key, token varchar(1024) not null, "
+                + "constraint jwt_string_key unique (token))");
+        execute("create table " + SCHEMA + ".token_digest (id bigint primary key, token_digest bytea not null, "
+                + "constraint token_digest_key unique (token_digest))");
+        log.info("Inserting {} tokens", rows);
+        // header.payload.signature with realistic lengths: the payload varies per user and instant, the 64-byte
+        // signature is random-looking; base64 instead of base64url doesn't change the sizes
+        try (PreparedStatement insert = connection.prepareStatement("insert into " + SCHEMA + ".jwt_string "
+                + "select i, ? || '.' "
+                + "|| translate(encode(convert_to('{\"uid\":' || i || ',\"role\":\"USER\",\"epoch\":0,\"sid\":' || i "
+                + "|| ',\"sub\":\"user-' || i || '\",\"iat\":' || (1700000000 + i) || ',\"exp\":' || (1700000300 + i) "
+                + "|| '}', 'UTF8'), 'base64'), E'\\n=', '') "
+                + "|| '.' || translate(encode(sha512(int8send(i)), 'base64'), E'\\n=', '') "
+                + "from generate_series(1, ?) i")) {
+            insert.setString(1, JWT_HEADER);
+            insert.setLong(2, rows);
+            insert.executeUpdate();
+        }
+        log.info("Computing the digests");
+        execute("insert into " + SCHEMA + ".token_digest "
+                + "select id, sha256(convert_to(token, 'UTF8')) from " + SCHEMA + ".jwt_string");
+        execute("vacuum analyze " + SCHEMA + ".jwt_string");
+        execute("vacuum analyze " + SCHEMA + ".token_digest");
+    }
+
+    /**
+     * @return the tokens looked up in both tables, read from random rows.
+     */
+    List<String> sampleTokens() throws SQLException {
+        List<String> tokens = new ArrayList<>(lookups);
+        try (PreparedStatement select = connection.prepareStatement("select token from " + SCHEMA + ".jwt_string where id = ?")) {
+            for (int i = 0; i < lookups; i++) {
+                select.setLong(1, 1 + random.nextInt(rows));
+                try (ResultSet resultSet = select.executeQuery()) {
+                    resultSet.next();
+                    tokens.add(resultSet.getString(1));
+                }
+            }
+        }
+        return tokens;
+    }
+
+    Map<String, Object> measure(String table, String column, List<String> tokens, Function<String, Object> key) throws SQLException {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("indexBytes", queryLong("pg_relation_size('" + SCHEMA + "." + table + "_key')"));
+        result.put("tableBytes", queryLong("pg_table_size('" + SCHEMA + "." + table + "')"));
+        result.put("averageKeyBytes", queryLong("avg(pg_column_size(" + column + ")) from " + SCHEMA + "." + table));
+
+        long[] latencies = new long[tokens.size()];
+        try (PreparedStatement select = connection.prepareStatement(
+                "select id from " + SCHEMA + "." + table + " where " + column + " = ?")) {
+            for (int pass = 0; pass < 2; pass++) { //the first pass warms up the JIT and the buffer cache
+                for (int i = 0; i < tokens.size(); i++) {
+                    long start = System.nanoTime();
+                    select.setObject(1, key.apply(tokens.get(i)));
+                    try (ResultSet resultSet = select.executeQuery()) {
+                        if (!resultSet.next()) {
+                            throw new IllegalStateException("Token " + i + " not found in " + table);
+                        }
+                    }
+                    latencies[i] = System.nanoTime() - start;
+                }
+            }
+        }
+        Arrays.sort(latencies);
+        result.put("lookupMicrosP50", latencies[latencies.length / 2] / 1e3);
+        result.put("lookupMicrosP99", latencies[(int) Math.ceil(latencies.length * 0.99) - 1] / 1e3);
+        result.put("lookupMicrosMean", Arrays.stream(latencies).average().orElse(0) / 1e3);
+        log.info("{}: {}", table, result);
+        return result;
+    }
+
+    private long queryLong(String expression) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select " + expression)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+}
@@ -20,12 +20,17 @@ package com.duberlyguarnizo.dummyjson;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
 
 @SpringBootApplication
 public class DummyJsonApplication {
+    // Startup steps recorded for the actuator "startup" endpoint (enough for every bean of the context)
+    private static final int STARTUP_STEPS_CAPACITY = 4096;
 
     public static void main(String[] args) {
-        SpringApplication.run(DummyJsonApplication.class, args);
+        SpringApplication application = new SpringApplication(DummyJsonApplication.class);
+        application.setApplicationStartup(new BufferingApplicationStartup(STARTUP_STEPS_CAPACITY));
+        application.run(args);
     }
 
 }
@@ -24,6 +24,10 @@ import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -33,6 +37,8 @@ import java.util.Collection;
 import java.util.List;
 
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "appUser") //limits in ehcache.xml
+@NaturalIdCache(region = "appUserByUsername")
 @Getter
 @Setter
 @Builder
@@ -58,12 +64,20 @@ public class AppUser extends AuditableEntity implements UserDetails {
     private static final long serialVersionUID = 987L;
     @NotBlank
     @Column(unique = true)
+    @NaturalId(mutable = true)
     private String username;
     @NotBlank
     private String password;
 
     private boolean locked;
 
+    /**
+     * Generation of the user's tokens, bumped to revoke all of them at once. Only written by
+     * {@link AppUserRepository#incrementTokenEpoch(Long)}, so saving a stale entity can't roll it back.
+     */
+    @Column(updatable = false)
+    private int tokenEpoch;
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         return List.of(new SimpleGrantedAuthority(role.name()));
@@ -0,0 +1,412 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.duberlyguarnizo.dummyjson.appuser;
+
+import com.duberlyguarnizo.dummyjson.appuser.dto.AppUserMapper;
+import com.duberlyguarnizo.dummyjson.appuser.dto.AppUserRegistrationDto;
+import com.duberlyguarnizo.dummyjson.auditing.CustomAuditorAware;
+import com.duberlyguarnizo.dummyjson.exceptions.ServerBusyException;
+import com.duberlyguarnizo.dummyjson.util.BoundedLineReader;
+import com.duberlyguarnizo.dummyjson.util.BoundedLineReader.Line;
+import com.duberlyguarnizo.dummyjson.util.ControllerUtils;
+import com.duberlyguarnizo.dummyjson.util.ImportLineResult;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk creation of users (role USER) from CSV, with a header row, or NDJSON. Rows are processed in chunks:
+ * <ol>
+ *     <li>usernames, emails and ID cards are checked against the database with one query, and against the previous
+ *     rows of the chunk; a duplicated row is reported and skipped, the others go on;</li>
+ *     <li>passwords are hashed in parallel on a fork-join pool of half the processors, through the bounded password
+ *     encoder, so logins still get hashing threads;</li>
+ *     <li>the chunk is inserted in one transaction with JDBC batching. If another request took a value in the
+ *     meantime, the rows of that chunk are saved one by one to report the violation on the right row.</li>
+ * </ol>
+ * The result of each row is written back as NDJSON as soon as its chunk is committed.
+ */
+@Slf4j
+@Service
+public class AppUserImportService {
+    static final int CHUNK_SIZE = 200;
+    static final int MAX_LINE_LENGTH = 4 * 1024; //a registration is a few hundred characters
+    private static final List<String> REQUIRED_CSV_COLUMNS = List.of("names", "username", "password", "email", "idcard");
+
+    private final AppUserRepository appUserRepository;
+    private final PasswordEncoder passwordEncoder;
+    private final AppUserMapper mapper;
+    private final CustomAuditorAware auditorAware;
+    private final ControllerUtils utils;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final ForkJoinPool hashingPool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+
+    public AppUserImportService(AppUserRepository appUserRepository,
+                                PasswordEncoder passwordEncoder,
+                                AppUserMapper mapper,
+                                CustomAuditorAware auditorAware,
+                                ControllerUtils utils,
+                                ObjectMapper objectMapper,
+                                Validator validator) {
+        this.appUserRepository = appUserRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.mapper = mapper;
+        this.auditorAware = auditorAware;
+        this.utils = utils;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        hashingPool.shutdownNow();
+    }
+
+    /**
+     * Resolves the creator and the localized messages on the request thread, since the returned body runs on an
+     * async thread once the response has started.
+     *
+     * @param input the request body.
+     * @param csv   whether the body is CSV (otherwise NDJSON).
+     * @return the response body, that creates the users and writes one {@link ImportLineResult} per row.
+     */
+    @PreAuthorize("hasAnyAuthority('ADMIN', 'SUPERVISOR')")
+    public StreamingResponseBody importUsers(InputStream input, boolean csv) {
+        var creatorId = auditorAware
+                .getCurrentAuditor()
+                .orElseThrow(() -> new AccessDeniedException(utils.getMessage("error_auditor_empty")));
+        var messages = new Messages(
+                utils.getMessage("exception_import_invalid_line"),
+                utils.getMessage("exception_import_invalid_csv_line"),
+                utils.getMessage("exception_import_line_too_long", new Object[]{String.valueOf(MAX_LINE_LENGTH)}),
+                utils.getMessage("exception_import_invalid_csv_header"),
+                utils.getMessage("exception_import_role_not_user"),
+                utils.getMessage("exception_import_password_blank"),
+                utils.getMessage("exception_import_duplicated"),
+                utils.getMessage("error_invalid_existing_field"),
+                utils.getMessage("exception_server_busy_detail"));
+        return output -> importLines(creatorId, messages, csv, input, output);
+    }
+
+    void importLines(Long creatorId, Messages messages, boolean csv, InputStream input, OutputStream output) throws IOException {
+        var reader = new BoundedLineReader(input, MAX_LINE_LENGTH);
+        Map<String, Integer> csvColumns = null;
+        List<Row> chunk = new ArrayList<>(CHUNK_SIZE);
+        int created = 0;
+        Line line;
+        while ((line = reader.next()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            if (csv && csvColumns == null) {
+                csvColumns = csvHeader(line);
+                if (!csvColumns.keySet().containsAll(REQUIRED_CSV_COLUMNS)) {
+                    write(List.of(ImportLineResult.failed(line.number(), messages.invalidCsvHeader())), output);
+                    return;
+                }
+                continue;
+            }
+            chunk.add(csv ? parseCsv(chunk.size(), line, csvColumns, messages) : parseNdjson(chunk.size(), line, messages));
+            if (chunk.size() == CHUNK_SIZE) {
+                created += write(importChunk(creatorId, messages, chunk), output);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            created += write(importChunk(creatorId, messages, chunk), output);
+        }
+        log.info("User import by user {}: {} users created from {} lines", creatorId, created, reader.lineCount());
+    }
+
+    private List<ImportLineResult> importChunk(Long creatorId, Messages messages, List<Row> chunk) {
+        ImportLineResult[] results = new ImportLineResult[chunk.size()];
+        List<Row> candidates = new ArrayList<>();
+        for (Row row : chunk) {
+            if (row.error() != null) {
+                results[row.index()] = ImportLineResult.failed(row.line(), row.error());
+            } else {
+                candidates.add(row);
+            }
+        }
+        candidates = withoutDuplicates(candidates, results, messages);
+        candidates = hashPasswords(candidates, results, messages);
+
+        List<AppUser> users = new ArrayList<>(candidates.size());
+        for (Row row : candidates) {
+            AppUser user = mapper.toEntity(row.user());
+            user.setActive(true);
+            user.setLocked(false);
+            user.setCreatedBy(creatorId);
+            user.setModifiedBy(creatorId); //auditing has no current user on the thread that writes the response
+            users.add(user);
+        }
+        try {
+            List<AppUser> saved = appUserRepository.saveAll(users);
+            for (int i = 0; i < saved.size(); i++) {
+                Row row = candidates.get(i);
+                results[row.index()] = ImportLineResult.created(row.line(), saved.get(i).getId());
+            }
+        } catch (DataIntegrityViolationException e) {
+            //a value was taken by another request after the duplicate check: save one by one to find the rows
+            log.warn("User import: a chunk of {} users violated a unique constraint, saving them one by one", users.size());
+            for (int i = 0; i < users.size(); i++) {
+                Row row = candidates.get(i);
+                AppUser user = users.get(i);
+                user.setId(null);
+                try {
+                    results[row.index()] = ImportLineResult.created(row.line(), appUserRepository.save(user).getId());
+                } catch (DataIntegrityViolationException rowException) {
+                    results[row.index()] = ImportLineResult.failed(row.line(), messages.notUnique());
+                }
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Reports the rows whose username, email or ID card already exist, in the database or in a previous row.
+     *
+     * @return the rows without duplicates.
+     */
+    private List<Row> withoutDuplicates(List<Row> candidates, ImportLineResult[] results, Messages messages) {
+        if (candidates.isEmpty()) {
+            return candidates;
+        }
+        Set<String> usernames = new HashSet<>();
+        Set<String> emails = new HashSet<>();
+        Set<String> idCards = new HashSet<>();
+        for (AppUser existing : appUserRepository.findByUsernameInOrEmailInOrIdCardIn(
+                candidates.stream().map(r -> r.user().getUsername()).toList(),
+                candidates.stream().map(r -> r.user().getEmail()).toList(),
+                candidates.stream().map(r -> r.user().getIdCard()).toList())) {
+            usernames.add(existing.getUsername());
+            emails.add(existing.getEmail());
+            idCards.add(existing.getIdCard());
+        }
+        List<Row> unique = new ArrayList<>(candidates.size());
+        for (Row row : candidates) {
+            List<String> duplicated = new ArrayList<>();
+            if (usernames.contains(row.user().getUsername())) {
+                duplicated.add("username");
+            }
+            if (emails.contains(row.user().getEmail())) {
+                duplicated.add("email");
+            }
+            if (idCards.contains(row.user().getIdCard())) {
+                duplicated.add("idCard");
+            }
+            if (duplicated.isEmpty()) {
+                usernames.add(row.user().getUsername());
+                emails.add(row.user().getEmail());
+                idCards.add(row.user().getIdCard());
+                unique.add(row);
+            } else {
+                results[row.index()] = ImportLineResult.failed(row.line(),
+                        messages.duplicated() + " " + String.join(", ", duplicated));
+            }
+        }
+        return unique;
+    }
+
+    /**
+     * Replaces the password of each row with its hash. A row whose hash is rejected, because the hashing queue is
+     * full of logins from other requests, is reported and skipped.
+     *
+     * @return the rows with a hashed password.
+     */
+    private List<Row> hashPasswords(List<Row> candidates, ImportLineResult[] results, Messages messages) {
+        if (candidates.isEmpty()) {
+            return candidates;
+        }
+        try {
+            hashingPool.submit(() -> candidates.parallelStream().forEach(row -> {
+                try {
+                    row.user().setPassword(passwordEncoder.encode(row.user().getPassword()));
+                } catch (ServerBusyException e) {
+                    results[row.index()] = ImportLineResult.failed(row.line(), messages.serverBusy());
+                }
+            })).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing the imported passwords", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Unable to hash the imported passwords", e.getCause());
+        }
+        return candidates.stream().filter(row -> results[row.index()] == null).toList();
+    }
+
+    private Row parseNdjson(int index, Line line, Messages messages) {
+        if (line.tooLong()) {
+            return Row.failed(index, line, messages.lineTooLong());
+        }
+        try {
+            return validate(index, line, objectMapper.readValue(line.text(), AppUserRegistrationDto.class), messages);
+        } catch (JsonProcessingException e) {
+            return Row.failed(index, line, messages.invalidLine() + " " + e.getOriginalMessage());
+        }
+    }
+
+    private Row parseCsv(int index, Line line, Map<String, Integer> columns, Messages messages) {
+        if (line.tooLong()) {
+            return Row.failed(index, line, messages.lineTooLong());
+        }
+        List<String> values = splitCsv(line.text());
+        if (values == null) {
+            return Row.failed(index, line, messages.invalidCsvLine());
+        }
+        String role = column(values, columns, "role");
+        AppUserRole parsedRole;
+        try {
+            parsedRole = role == null || role.isBlank() ? null : AppUserRole.valueOf(role.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return Row.failed(index, line, messages.roleNotUser());
+        }
+        return validate(index, line, AppUserRegistrationDto.builder()
+                .names(column(values, columns, "names"))
+                .username(column(values, columns, "username"))
+                .password(column(values, columns, "password"))
+                .email(column(values, columns, "email"))
+                .idCard(column(values, columns, "idcard"))
+                .role(parsedRole)
+                .build(), messages);
+    }
+
+    private Row validate(int index, Line line, AppUserRegistrationDto user, Messages messages) {
+        if (user.getRole() == null) {
+            user.setRole(AppUserRole.USER);
+        }
+        if (user.getRole() != AppUserRole.USER) {
+            return Row.failed(index, line, messages.roleNotUser());
+        }
+        if (user.getPassword() == null || user.getPassword().isBlank()) {
+            return Row.failed(index, line, messages.passwordBlank());
+        }
+        var violations = validator.validate(user);
+        if (!violations.isEmpty()) {
+            return Row.failed(index, line, violations.stream()
+                    .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", ")));
+        }
+        return new Row(index, line.number(), user, null);
+    }
+
+    private int write(List<ImportLineResult> results, OutputStream output) throws IOException {
+        int created = 0;
+        for (ImportLineResult result : results) {
+            output.write(objectMapper.writeValueAsBytes(result));
+            output.write('\n');
+            if (result.getId() != null) {
+                created++;
+            }
+        }
+        output.flush();
+        return created;
+    }
+
+    private static Map<String, Integer> csvHeader(Line line) {
+        Map<String, Integer> columns = new HashMap<>();
+        List<String> names = line.tooLong() ? null : splitCsv(line.text());
+        if (names != null) {
+            for (int i = 0; i < names.size(); i++) {
+                columns.put(names.get(i).trim().toLowerCase(Locale.ROOT), i);
+            }
+        }
+        return columns;
+    }
+
+    private static String column(List<String> values, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        return index == null || index >= values.size() ? null : values.get(index);
+    }
+
+    /**
+     * Splits a CSV line (RFC 4180, without line breaks inside quoted values).
+     *
+     * @return the values, or null if a quoted value is not closed.
+     */
+    static List<String> splitCsv(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        if (quoted) {
+            return null;
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    record Messages(String invalidLine,
+                    String invalidCsvLine,
+                    String lineTooLong,
+                    String invalidCsvHeader,
+                    String roleNotUser,
+                    String passwordBlank,
+                    String duplicated,
+                    String notUnique,
+                    String serverBusy) {
+    }
+
+    /**
+     * A parsed row: its position in the chunk, and the user to create or the error that prevents it.
+     */
+    private record Row(int index, int line, AppUserRegistrationDto user, String error) {
+        static Row failed(int index, Line line, String error) {
+            return new Row(index, line.number(), null, error);
+        }
+    }
+}
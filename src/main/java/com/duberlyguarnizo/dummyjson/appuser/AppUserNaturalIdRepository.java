@@ -0,0 +1,33 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.duberlyguarnizo.dummyjson.appuser;
+
+import java.util.Optional;
+
+/**
+ * Lookups Spring Data can't derive: {@link AppUser#getUsername()} is the natural id of the entity, and loading by
+ * natural id goes through the second-level cache instead of the database.
+ */
+public interface AppUserNaturalIdRepository {
+    /**
+     * Finds a user by its exact username (case-sensitive), from the natural-id cache when it was loaded before.
+     */
+    Optional<AppUser> findByNaturalUsername(String username);
+}
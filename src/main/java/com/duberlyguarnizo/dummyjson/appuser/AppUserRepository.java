@@ -21,19 +21,19 @@ package com.duberlyguarnizo.dummyjson.appuser;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
-import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface AppUserRepository extends JpaRepository<AppUser, Long> {
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
-        // To avoid stack overflow exception with AuditorAware
-// See https://stackoverflow.com/questions/42315960/stackoverflowexception-in-spring-data-jpa-app-with-spring-security-auditoraware
-// to review a better way, but harder, to do this... (Duberly Guarnizo, 2023).
+public interface AppUserRepository extends JpaRepository<AppUser, Long>, AppUserNaturalIdRepository {
+    //joins the caller transaction: the auditor reads the JWT principal and no longer queries during a flush
+    @Transactional(readOnly = true)
     List<AppUser> findByUsernameIgnoreCase(String username);
 
     Optional<AppUser> findByUsernameContainsIgnoreCase(String username);
@@ -43,4 +43,16 @@ public interface AppUserRepository extends JpaRepository<AppUser, Long> {
     Page<AppUser> findByRoleIn(List<AppUserRole> roles, Pageable page);
 
     Page<AppUser> findByRole(AppUserRole role, Pageable page);
+
+    List<AppUser> findByUsernameInOrEmailInOrIdCardIn(Collection<String> usernames,
+                                                      Collection<String> emails,
+                                                      Collection<String> idCards);
+
+    @Query("select u.tokenEpoch from AppUser u where u.id = :id")
+    Optional<Integer> findTokenEpochById(Long id);
+
+    @Transactional
+    @Modifying
+    @Query("update AppUser u set u.tokenEpoch = u.tokenEpoch + 1 where u.id = :id")
+    int incrementTokenEpoch(Long id);
 }
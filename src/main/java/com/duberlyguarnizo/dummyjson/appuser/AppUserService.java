@@ -28,6 +28,9 @@ import com.duberlyguarnizo.dummyjson.exceptions.IdNotFoundException;
 import com.duberlyguarnizo.dummyjson.exceptions.InvalidFieldValueException;
 import com.duberlyguarnizo.dummyjson.exceptions.RepositoryException;
 import com.duberlyguarnizo.dummyjson.jwt_token.JwtTokenService;
+import com.duberlyguarnizo.dummyjson.jwt_token.TokenEpochs;
+import com.duberlyguarnizo.dummyjson.security.AuthEventPublisher;
+import com.duberlyguarnizo.dummyjson.security.CustomUserDetailService;
 import com.duberlyguarnizo.dummyjson.util.ControllerUtils;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -39,12 +42,17 @@ import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.List;
+import java.util.Objects;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
+@Transactional(readOnly = true)
 public class AppUserService {
     private final AppUserRepository appUserRepository;
     private final PasswordEncoder passwordEncoder;
@@ -52,6 +60,9 @@ public class AppUserService {
     private final CustomAuditorAware auditorAware;
     private final ControllerUtils utils;
     private final JwtTokenService jwtService;
+    private final CustomUserDetailService userDetailService;
+    private final TokenEpochs tokenEpochs;
+    private final AuthEventPublisher authEvents;
 
     @PreAuthorize("hasAnyAuthority('ADMIN', 'SUPERVISOR')")
     public AppUserDetailDto getManagerById(Long id) {
@@ -78,6 +89,7 @@ public class AppUserService {
     }
 
     @PreAuthorize("hasAuthority('ADMIN')") //only admin user can create users
+    @Transactional
     public Long createManager(@Valid AppUserRegistrationDto registrationDto) throws RepositoryException {
         registrationDto.setPassword(passwordEncoder.encode(registrationDto.getPassword()));
         //Verify the role. A manager cannot have role USER
@@ -98,6 +110,7 @@ public class AppUserService {
      * @throws InvalidFieldValueException If the user's role is ADMIN or SUPERVISOR.
      */
     @PreAuthorize("hasAnyAuthority('ADMIN', 'SUPERVISOR')")// Admin and Supervisor can create users via management.
+    @Transactional
     public Long createUser(@Valid AppUserRegistrationDto registrationDto) throws RepositoryException {
         registrationDto.setPassword(passwordEncoder.encode(registrationDto.getPassword()));
         //Verify the role. A user cannot have ADMIN or SUPERVISOR role.
@@ -108,48 +121,55 @@ public class AppUserService {
     }
 
     @PreAuthorize("hasAuthority('ADMIN')") //only admin user can edit managers
+    @Transactional
     public void partialUpdateManager(Long userId, AppUserRegistrationDto registrationDto) {
         if (registrationDto.getRole() != AppUserRole.ADMIN && registrationDto.getRole() != AppUserRole.SUPERVISOR) {
             throw new InvalidFieldValueException("The managers can only have ADMIN or SUPERVISOR role");//TODO: translate this
         }
+        encodePassword(registrationDto);
         var manager = findAppUserById(userId, true);
+        String previousUsername = manager.getUsername();
+        AppUserRole previousRole = manager.getRole();
         manager = mapper.partialUpdate(registrationDto, manager);
-        if (registrationDto.getPassword() != null) {
-            manager.setPassword(passwordEncoder.encode(registrationDto.getPassword()));
-        }
         appUserRepository.save(manager);
+        afterUpdate(manager, previousUsername, previousRole);
     }
 
     @PreAuthorize("hasAnyAuthority('ADMIN', 'SUPERVISOR')") //only admin and supervisors user can edit users
+    @Transactional
     public void partialUpdateUser(Long userId, AppUserRegistrationDto registrationDto) {
         if (registrationDto.getRole() == AppUserRole.ADMIN || registrationDto.getRole() == AppUserRole.SUPERVISOR) {
             throw new InvalidFieldValueException("The users cannot have ADMIN or SUPERVISOR role");//TODO: translate this
         }
+        encodePassword(registrationDto);
         var user = findAppUserById(userId, false);
+        String previousUsername = user.getUsername();
+        AppUserRole previousRole = user.getRole();
         user = mapper.partialUpdate(registrationDto, user);
-        if (registrationDto.getPassword() != null) {
-            user.setPassword(passwordEncoder.encode(registrationDto.getPassword()));
-        }
         appUserRepository.save(user);
+        afterUpdate(user, previousUsername, previousRole);
     }
 
     @PreAuthorize("hasAnyAuthority('USER')") //only USER role can edit own user (current user)
+    @Transactional
     public void partialUpdateOwnUser(AppUserRegistrationDto registrationDto) {
         if (registrationDto.getRole() == AppUserRole.ADMIN || registrationDto.getRole() == AppUserRole.SUPERVISOR) {
             throw new InvalidFieldValueException("The users cannot have ADMIN or SUPERVISOR role");//TODO: translate this
         }
+        encodePassword(registrationDto);
         var currentAuditorId = auditorAware.getCurrentAuditor();
         if (currentAuditorId.isPresent()) {
             var user = findAppUserById(currentAuditorId.get(), false);
+            String previousUsername = user.getUsername();
+            AppUserRole previousRole = user.getRole();
             user = mapper.partialUpdate(registrationDto, user);
-            if (registrationDto.getPassword() != null) {
-                user.setPassword(passwordEncoder.encode(registrationDto.getPassword()));
-            }
             appUserRepository.save(user);
+            afterUpdate(user, previousUsername, previousRole);
         }
     }
 
     @PreAuthorize("hasAuthority('ADMIN')") //only admin user can delete users
+    @Transactional
     public void deleteManager(Long id) {
         var currentAuditor = auditorAware.getCurrentAuditor();
         if (currentAuditor.isEmpty()) {
@@ -160,11 +180,14 @@ public class AppUserService {
             if (appUser.getId().equals(currentUserId)) {
                 throw new ForbiddenActionException(utils.getMessage("error_delete_own_user"));
             }
+            tokenEpochs.bump(id); //the user's tokens carry its id, revoke them before the id disappears
             appUserRepository.deleteById(id);
+            evictUsers(appUser.getUsername());
         }
     }
 
     @PreAuthorize("hasAnyAuthority('ADMIN', 'SUPERVISOR')")
+    @Transactional
     public void deleteUser(Long id) {
         var currentAuditor = auditorAware.getCurrentAuditor();
         if (currentAuditor.isEmpty()) {
@@ -178,7 +201,9 @@ public class AppUserService {
             if (appUser.getRole() == AppUserRole.ADMIN || appUser.getRole() == AppUserRole.SUPERVISOR) {
                 throw new ForbiddenActionException(utils.getMessage("error_delete_user"));
             }
+            tokenEpochs.bump(id); //the user's tokens carry its id, revoke them before the id disappears
             appUserRepository.deleteById(id);
+            evictUsers(appUser.getUsername());
         }
     }
 
@@ -192,6 +217,7 @@ public class AppUserService {
      * @throws AccessDeniedException    If auditor is not present in the current context.
      */
     @PreAuthorize("hasAuthority('ADMIN')") //only admin user can deactivate other admins
+    @Transactional
     public void deactivateManager(Long id) {
         var currentAuditor = auditorAware.getCurrentAuditor();
         var appUser = findAppUserById(id, true);
@@ -206,6 +232,7 @@ public class AppUserService {
             }
             appUser.setActive(false);
             appUserRepository.save(appUser);
+            evictUsers(appUser.getUsername());
             // revoke JWT for the deactivated user
             jwtService.revokeAllUserTokensByUserId(appUser.getId());
 
@@ -222,6 +249,7 @@ public class AppUserService {
      * @throws AccessDeniedException If the current user is not authorized to deactivate the user or if auditor is not present in the current context.
      */
     @PreAuthorize("hasAnyAuthority('ADMIN', 'SUPERVISOR')")
+    @Transactional
     public void deactivateUser(Long id) {
         var currentAuditor = auditorAware.getCurrentAuditor();
         var appUser = findAppUserById(id, false);
@@ -230,6 +258,7 @@ public class AppUserService {
             && currentAuditor.isPresent()) {
             appUser.setActive(false);
             appUserRepository.save(appUser);
+            evictUsers(appUser.getUsername());
             jwtService.revokeAllUserTokensByUserId(appUser.getId());
         } else {
             throw new AccessDeniedException(utils.getMessage("error_deactivate_user"));
@@ -260,10 +289,6 @@ public class AppUserService {
         }
         final String i18nString = i18n;
 
-        appUserRepository.findAll().forEach(user -> log.warn("Usuario encontrado con ID: {}", user.getId()));
-        String message = appUserRepository.existsById(id) ? "Si: " : "No";
-        log.warn("Existe el usuario buscado con ID: {}? Respuesta: {}", id, message);
-
         return appUserRepository
                 .findById(id)
                 .orElseThrow(() -> new IdNotFoundException(
@@ -272,6 +297,46 @@ public class AppUserService {
                                 new Long[]{id})));
     }
 
+    /**
+     * Evicts the updated user from the user details cache and, since tokens carry the username and role as claims,
+     * revokes its tokens if any of them changed.
+     */
+    private void afterUpdate(AppUser user, String previousUsername, AppUserRole previousRole) {
+        evictUsers(previousUsername, user.getUsername());
+        if (!Objects.equals(user.getUsername(), previousUsername) || user.getRole() != previousRole) {
+            tokenEpochs.bump(user.getId());
+        }
+    }
+
+    /**
+     * Drops the users from the user details cache of this node and, through {@link AuthEventPublisher}, of the others,
+     * once the transaction commits: evicting earlier would let a concurrent request cache the old row again until the
+     * entry expires.
+     */
+    private void evictUsers(String... usernames) {
+        authEvents.userChanged(usernames); //sent after commit by the publisher
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    userDetailService.evict(usernames);
+                }
+            });
+        } else {
+            userDetailService.evict(usernames);
+        }
+    }
+
+    /**
+     * Replaces the password of the DTO, if any, with its hash. Called before the first query of the transaction, so
+     * no pooled connection is held while hashing.
+     */
+    private void encodePassword(AppUserRegistrationDto registrationDto) {
+        if (registrationDto.getPassword() != null) {
+            registrationDto.setPassword(passwordEncoder.encode(registrationDto.getPassword()));
+        }
+    }
+
     private Long saveAppUserAndGetId(AppUserRegistrationDto registrationDto) {
         AppUser convertedManager = mapper.toEntity(registrationDto);
         convertedManager.setActive(true);
@@ -21,6 +21,7 @@ package com.duberlyguarnizo.dummyjson.appuser.controller;
 import com.duberlyguarnizo.dummyjson.appuser.AppUserService;
 import com.duberlyguarnizo.dummyjson.appuser.dto.AppUserDetailDto;
 import com.duberlyguarnizo.dummyjson.appuser.dto.AppUserRegistrationDto;
+import com.duberlyguarnizo.dummyjson.query_budget.QueryBudget;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
@@ -36,12 +37,14 @@ import org.springframework.web.bind.annotation.*;
 public class AppUserController {
     private final AppUserService service;
 
+    @QueryBudget(2)
     @GetMapping("/profile")
     public ResponseEntity<AppUserDetailDto> getUserProfile() {
         var currentUser = service.getCurrentUser();
         return ResponseEntity.ok(currentUser);
     }
 
+    @QueryBudget(5)
     @PatchMapping
     public ResponseEntity<Long> editUserProfile(@RequestBody AppUserRegistrationDto dto) {
         var currentUser = service.getCurrentUser();
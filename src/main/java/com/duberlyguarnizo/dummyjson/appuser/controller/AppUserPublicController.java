@@ -20,6 +20,7 @@ package com.duberlyguarnizo.dummyjson.appuser.controller;
 
 import com.duberlyguarnizo.dummyjson.appuser.AppUserService;
 import com.duberlyguarnizo.dummyjson.appuser.dto.AppUserRegistrationDto;
+import com.duberlyguarnizo.dummyjson.query_budget.QueryBudget;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -34,6 +35,7 @@ import org.springframework.web.bind.annotation.RestController;
 public class AppUserPublicController {
     private final AppUserService service;
 
+    @QueryBudget(3)
     @PostMapping
     public ResponseEntity<Long> createUser(@RequestBody AppUserRegistrationDto dto) {
         Long createdId = service.createUser(dto);
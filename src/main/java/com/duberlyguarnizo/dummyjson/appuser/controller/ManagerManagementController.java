@@ -22,6 +22,7 @@ import com.duberlyguarnizo.dummyjson.appuser.AppUserService;
 import com.duberlyguarnizo.dummyjson.appuser.dto.AppUserBasicDto;
 import com.duberlyguarnizo.dummyjson.appuser.dto.AppUserDetailDto;
 import com.duberlyguarnizo.dummyjson.appuser.dto.AppUserRegistrationDto;
+import com.duberlyguarnizo.dummyjson.query_budget.QueryBudget;
 import com.duberlyguarnizo.dummyjson.util.ControllerUtils;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -60,6 +61,7 @@ public class ManagerManagementController {
      * @return a ResponseEntity with a Page object containing basic details of the managers on the requested page, sorted as specified.
      * The response status will be 200 (OK) on success.
      */
+    @QueryBudget(3)
     @GetMapping()
     public ResponseEntity<Page<AppUserBasicDto>> getAllManagers(@RequestParam(required = false, defaultValue = "0") int page,
                                                                 @RequestParam(required = false, defaultValue = "15") int size,
@@ -79,6 +81,7 @@ public class ManagerManagementController {
      * If no manager is found with the specified ID, the response status will be ProblemDetail with status 404 (Not Found).
      * If the ID provided is not a valid Long value, it will return a ProblemDetail.
      */
+    @QueryBudget(2)
     @GetMapping("/{id}")
     public ResponseEntity<AppUserDetailDto> getManager(@PathVariable Long id) {
         var result = appUserService.getManagerById(id);
@@ -91,6 +94,7 @@ public class ManagerManagementController {
      * @param registrationDto the registration DTO containing the necessary details of the manager to be created. Validation is made at service level.
      * @return a ResponseEntity with the id of the newly created manager. The response status will be 201 (Created) on success. It will return a ProblemDetail (managed by the service).
      */
+    @QueryBudget(3)
     @PostMapping
     public ResponseEntity<Long> createManager(@Valid @RequestBody AppUserRegistrationDto registrationDto) {
         var result = appUserService.createManager(registrationDto);
@@ -103,6 +107,7 @@ public class ManagerManagementController {
      * @param registrationDto the registration DTO containing the updated details of the manager. Must include ID field.
      * @return a ResponseEntity with no content (204 No Content) on successful update.
      */
+    @QueryBudget(5)
     @PatchMapping("/{id}")
     public ResponseEntity<Void> updateManager(@PathVariable Long id, @Valid @RequestBody AppUserRegistrationDto registrationDto) {
         appUserService.partialUpdateManager(id, registrationDto);
@@ -115,6 +120,7 @@ public class ManagerManagementController {
      * @param id the id of the manager to be deleted.
      * @return a ResponseEntity with no content (204 No Content) on successful deletion.
      */
+    @QueryBudget(7)
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteManager(@PathVariable Long id) {
         appUserService.deleteManager(id);
@@ -128,6 +134,7 @@ public class ManagerManagementController {
      * @param id the id of the manager to deactivate.
      * @return a ResponseEntity with a void body. The response status will be 200 (Ok) on success.
      */
+    @QueryBudget(8)
     @PatchMapping("/deactivate/{id}")
     public ResponseEntity<Void> deactivateManager(@PathVariable Long id) {
         appUserService.deactivateManager(id);
@@ -18,21 +18,28 @@
 
 package com.duberlyguarnizo.dummyjson.appuser.controller;
 
+import com.duberlyguarnizo.dummyjson.appuser.AppUserImportService;
 import com.duberlyguarnizo.dummyjson.appuser.AppUserService;
 import com.duberlyguarnizo.dummyjson.appuser.dto.AppUserBasicDto;
 import com.duberlyguarnizo.dummyjson.appuser.dto.AppUserDetailDto;
 import com.duberlyguarnizo.dummyjson.appuser.dto.AppUserRegistrationDto;
+import com.duberlyguarnizo.dummyjson.query_budget.QueryBudget;
 import com.duberlyguarnizo.dummyjson.util.ControllerUtils;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
 
 @RestController
 @RequestMapping("/api/v1/management/users")
@@ -40,9 +47,12 @@ import org.springframework.web.bind.annotation.*;
 @Tag(name = "Managers", description = "Endpoints of CRUD methods  for managers to manage users") //Swagger UI
 @RequiredArgsConstructor
 public class UserManagementController {
+    private static final String TEXT_CSV_VALUE = "text/csv";
     private final AppUserService appUserService;
+    private final AppUserImportService importService;
     private final ControllerUtils utils;
 
+    @QueryBudget(3)
     @GetMapping()
     public ResponseEntity<Page<AppUserBasicDto>> getAllUsers(@RequestParam(required = false, defaultValue = "0") int page,
                                                              @RequestParam(required = false, defaultValue = "15") int size,
@@ -54,24 +64,47 @@ public class UserManagementController {
         return new ResponseEntity<>(list, HttpStatus.OK);
     }
 
+    @QueryBudget(2)
     @GetMapping("/{id}")
     public ResponseEntity<AppUserDetailDto> getUser(@PathVariable Long id) {
         var result = appUserService.getAppUserById(id);
         return new ResponseEntity<>(result, HttpStatus.OK);
     }
 
+    @QueryBudget(3)
     @PostMapping
     public ResponseEntity<Long> createUser(@Valid @RequestBody AppUserRegistrationDto registrationDto) {
         var result = appUserService.createUser(registrationDto);
         return new ResponseEntity<>(result, HttpStatus.CREATED);
     }
 
+    /**
+     * Creates many users with the USER role, from a CSV body with a header row (names, username, password, email,
+     * idCard and, optionally, role) or an NDJSON body with one registration object per line. The response is streamed
+     * as NDJSON while the import runs, with one line per input row: the id of the created user, or the error that
+     * prevented it, like a username, email or ID card that already exists. Invalid rows don't stop the import.
+     *
+     * @param request the request, whose body is read while the response is written.
+     * @return HTTP 200 with one JSON object per imported row.
+     */
+    @PostMapping(path = "/import",
+            consumes = {TEXT_CSV_VALUE, MediaType.APPLICATION_NDJSON_VALUE},
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> importUsers(HttpServletRequest request) throws IOException {
+        boolean csv = MediaType.parseMediaType(request.getContentType()).isCompatibleWith(MediaType.parseMediaType(TEXT_CSV_VALUE));
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(importService.importUsers(request.getInputStream(), csv));
+    }
+
+    @QueryBudget(5)
     @PatchMapping("/{id}")
     public ResponseEntity<Void> updateUser(@PathVariable Long id, @Valid @RequestBody AppUserRegistrationDto registrationDto) {
         appUserService.partialUpdateUser(id, registrationDto);
         return ResponseEntity.noContent().build();
     }
 
+    @QueryBudget(7)
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteUser(@PathVariable Long id) {
         appUserService.deleteUser(id);
@@ -84,6 +117,7 @@ public class UserManagementController {
      * @param id the id of the user to deactivate.
      * @return a ResponseEntity with a void body. The response status will be 200 (Ok) on success.
      */
+    @QueryBudget(8)
     @PatchMapping("/deactivate/{id}")
     public ResponseEntity<Void> deactivateUser(@PathVariable Long id) {
         appUserService.deactivateUser(id);
@@ -19,23 +19,21 @@
 package com.duberlyguarnizo.dummyjson.auditing;
 
 import com.duberlyguarnizo.dummyjson.appuser.AppUser;
-import com.duberlyguarnizo.dummyjson.appuser.AppUserRepository;
+import com.duberlyguarnizo.dummyjson.security.JwtPrincipal;
 import jakarta.validation.constraints.NotNull;
 import org.springframework.data.domain.AuditorAware;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 
-import java.util.List;
 import java.util.Optional;
 
+/**
+ * Resolves the current user id from the principal, without querying the database: requests authenticated with a
+ * JWT carry a {@link JwtPrincipal} built from the verified claims.
+ */
 @Component
 public class CustomAuditorAware implements AuditorAware<Long> {
-    private final AppUserRepository appUserRepository;
-
-    public CustomAuditorAware(AppUserRepository appUserRepository) {
-        this.appUserRepository = appUserRepository;
-    }
 
     @Override
     public @NotNull Optional<Long> getCurrentAuditor() {
@@ -44,17 +42,12 @@ public class CustomAuditorAware implements AuditorAware<Long> {
                 .getAuthentication();
         if (authentication == null) {
             return Optional.empty();
+        } else if (authentication.getPrincipal() instanceof JwtPrincipal principal) {
+            return Optional.ofNullable(principal.id());
+        } else if (authentication.getPrincipal() instanceof AppUser appUser) {
+            return Optional.ofNullable(appUser.getId());
         } else {
-            AppUser principal =
-                    (AppUser) authentication
-                            .getPrincipal();
-            String username = principal.getUsername();
-            List<AppUser> currentUser = appUserRepository.findByUsernameIgnoreCase(username);
-            if (!currentUser.isEmpty()) {
-                return Optional.of(currentUser.get(0).getId());
-            } else {
-                return Optional.empty();
-            }
+            return Optional.empty();
         }
     }
 }
\ No newline at end of file
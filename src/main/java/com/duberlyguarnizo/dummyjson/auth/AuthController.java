@@ -21,50 +21,84 @@ package com.duberlyguarnizo.dummyjson.auth;
 import com.duberlyguarnizo.dummyjson.appuser.AppUser;
 import com.duberlyguarnizo.dummyjson.exceptions.JwtValidationException;
 import com.duberlyguarnizo.dummyjson.jwt_token.JwtTokenService;
-import com.duberlyguarnizo.dummyjson.security.CustomUserDetailService;
-import com.duberlyguarnizo.dummyjson.security.JwtUtil;
+import com.duberlyguarnizo.dummyjson.security.JwtKeyRing;
 import io.swagger.v3.oas.annotations.Hidden;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
 import lombok.extern.java.Log;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/v1/auth")
 @Tag(name = "Authentication", description = "Endpoint for login")
 @Log
 public class AuthController {
     private final AuthenticationManager authenticationManager;
-    private final CustomUserDetailService userDetailService;
     private final JwtTokenService tokenService; //Using repository directly, to avoid use of intermediate layer for speed
-    private final JwtUtil jwtUtil;
+    private final JwtKeyRing keyRing;
+    private final LoginAttemptGuard loginGuard;
 
-    public AuthController(AuthenticationManager authenticationManager, CustomUserDetailService userDetailService, JwtTokenService tokenService, JwtUtil jwtUtil) {
+    public AuthController(AuthenticationManager authenticationManager,
+                          JwtTokenService tokenService,
+                          JwtKeyRing keyRing,
+                          LoginAttemptGuard loginGuard) {
         this.authenticationManager = authenticationManager;
-        this.userDetailService = userDetailService;
         this.tokenService = tokenService;
-        this.jwtUtil = jwtUtil;
+        this.keyRing = keyRing;
+        this.loginGuard = loginGuard;
     }
 
+    /**
+     * Logs the user in. Usernames and addresses with too many recent failures are rejected with HTTP 429 before the
+     * password is verified.
+     */
     @PostMapping("/authenticate")
-    public ResponseEntity<AuthResponse> doAuthenticate(@RequestBody AuthRequest request) throws AuthenticationException {
-        authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(
-                        request.getUsername(),
-                        request.getPassword()));
-        final AppUser appUser = (AppUser) userDetailService.loadUserByUsername(request.getUsername());
-        final String jwt = jwtUtil.generateToken(appUser);
-        AuthResponse response = new AuthResponse(jwt);
-
-        tokenService.saveToken(jwt, appUser.getId());
+    public ResponseEntity<AuthResponse> doAuthenticate(@RequestBody AuthRequest request,
+                                                       HttpServletRequest servletRequest) throws AuthenticationException {
+        String address = servletRequest.getRemoteAddr();
+        loginGuard.check(request.getUsername(), address);
+        Authentication authentication;
+        try {
+            authentication = authenticationManager.authenticate(
+                    new UsernamePasswordAuthenticationToken(
+                            request.getUsername(),
+                            request.getPassword()));
+        } catch (BadCredentialsException e) {
+            loginGuard.recordFailure(request.getUsername(), address);
+            throw e;
+        }
+        //the provider has already loaded the user (through CustomUserDetailService and its cache)
+        final AppUser appUser = (AppUser) authentication.getPrincipal();
+        var tokens = tokenService.issueTokens(appUser);
+        AuthResponse response = new AuthResponse(tokens.accessToken(), tokens.refreshToken());
 
         return new ResponseEntity<>(response, HttpStatus.OK);
     }
 
+    /**
+     * Exchanges a refresh token for a new access token and a new refresh token. Each refresh token can be used once.
+     *
+     * @param request the refresh token returned by the last login or refresh.
+     * @return HTTP 200 with the new tokens, or HTTP 403 if the refresh token is not valid anymore.
+     */
+    @PostMapping("/refresh")
+    public ResponseEntity<AuthResponse> doRefresh(@Valid @RequestBody RefreshRequest request) {
+        var tokens = tokenService.refreshTokens(request.getRefreshToken());
+        return ResponseEntity.ok(new AuthResponse(tokens.accessToken(), tokens.refreshToken()));
+    }
+
     @GetMapping("/logout")
     public ResponseEntity<Void> doLogOut(@RequestHeader("authorization") String headerToken) {
         tokenService.revokeToken(headerToken);
@@ -83,6 +117,19 @@ public class AuthController {
         return ResponseEntity.noContent().build();
     }
 
+    /**
+     * Public keys that verify the tokens in circulation (JWK set, RFC 7517). Verification-only nodes and other
+     * services fetch them from here, so only the signing nodes hold private keys.
+     *
+     * @return HTTP 200 with the JWK set, cacheable for a few minutes (new keys sign tokens only after a rotation).
+     */
+    @GetMapping("/jwks")
+    public ResponseEntity<Map<String, Object>> getJwks() {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(Duration.ofMinutes(5)).cachePublic())
+                .body(keyRing.jwks());
+    }
+
     @Hidden //no need to show this as is a utility endpoint, not designed to be used by API clients
     @GetMapping("/invalid-jwt")
     public ResponseEntity<Void> returnInvalidJwtProblemDetail() {
@@ -25,4 +25,5 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 public class AuthResponse {
     private final String jwt;
+    private final String refreshToken;
 }
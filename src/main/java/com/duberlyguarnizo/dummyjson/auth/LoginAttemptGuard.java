@@ -0,0 +1,86 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.duberlyguarnizo.dummyjson.auth;
+
+import com.duberlyguarnizo.dummyjson.exceptions.TooManyLoginAttemptsException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Counts failed logins per username and per client address over a sliding window, and rejects further attempts once
+ * either goes over its limit, before the password is verified (each verification is a BCrypt hash). The lock is
+ * temporary and lives only in memory: it fades out with the window, and it never touches {@code AppUser.locked},
+ * so guessing against an account can't lock its owner out until an administrator unlocks it.
+ * <p>
+ * Usernames are counted case-insensitively, like the login looks them up, so changing the case of a username doesn't
+ * get a fresh counter.
+ * <p>
+ * Counters use a fixed amount of memory (see {@link SlidingWindowCounter}), so random usernames or spoofed
+ * addresses can't grow it.
+ */
+@Component
+@Slf4j
+public class LoginAttemptGuard {
+    private static final int COUNTER_WIDTH = 1 << 16;
+
+    private final SlidingWindowCounter usernameFailures;
+    private final SlidingWindowCounter addressFailures;
+    private final int maxFailuresPerUsername;
+    private final int maxFailuresPerAddress;
+
+    public LoginAttemptGuard(@Value("${auth.login-guard.window}") Duration window,
+                             @Value("${auth.login-guard.max-failures-per-username}") int maxFailuresPerUsername,
+                             @Value("${auth.login-guard.max-failures-per-address}") int maxFailuresPerAddress) {
+        this.usernameFailures = new SlidingWindowCounter(COUNTER_WIDTH, window);
+        this.addressFailures = new SlidingWindowCounter(COUNTER_WIDTH, window);
+        this.maxFailuresPerUsername = maxFailuresPerUsername;
+        this.maxFailuresPerAddress = maxFailuresPerAddress;
+    }
+
+    /**
+     * @throws TooManyLoginAttemptsException if the username or the address has failed too many times recently.
+     */
+    public void check(String username, String address) {
+        long now = System.currentTimeMillis();
+        if (usernameFailures.estimate(usernameKey(username), now) >= maxFailuresPerUsername
+                || addressFailures.estimate(keyOf(address), now) >= maxFailuresPerAddress) {
+            log.debug("Login attempt for {} from {} rejected by the login guard", username, address);
+            throw new TooManyLoginAttemptsException(usernameFailures.untilNextWindow(now));
+        }
+    }
+
+    public void recordFailure(String username, String address) {
+        long now = System.currentTimeMillis();
+        usernameFailures.increment(usernameKey(username), now);
+        addressFailures.increment(keyOf(address), now);
+    }
+
+    private static String usernameKey(String username) {
+        return keyOf(username).toLowerCase(Locale.ROOT);
+    }
+
+    private static String keyOf(String value) {
+        return value == null ? "" : value;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.duberlyguarnizo.dummyjson.auth;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Approximate sliding-window counters in a fixed amount of memory, whatever the number of distinct keys: a count-min
+ * sketch of two rows. Each cell packs the number of its window and the counts of the previous and the current window
+ * in one long, so it's updated with a single compare-and-set. The estimate weights the previous window by the part
+ * of it that is still inside the sliding window.
+ * <p>
+ * Keys are hashed with SHA-256 and a random per-instance salt, so colliding keys can't be prepared in advance. A
+ * collision can only over-count, and taking the minimum of both rows makes that unlikely.
+ */
+class SlidingWindowCounter {
+    private static final int ROWS = 2;
+    private static final int COUNT_BITS = 20;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    private static final long WINDOW_MASK = (1L << (Long.SIZE - 2 * COUNT_BITS)) - 1;
+
+    private final AtomicLongArray[] rows = new AtomicLongArray[ROWS];
+    private final int indexMask;
+    private final long windowMillis;
+    private final byte[] salt = new byte[16];
+
+    /**
+     * @param width  cells per row, a power of two. Memory is {@code 2 * width} longs.
+     * @param window length of the sliding window.
+     */
+    SlidingWindowCounter(int width, Duration window) {
+        if (Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("The width must be a power of two: " + width);
+        }
+        for (int i = 0; i < ROWS; i++) {
+            rows[i] = new AtomicLongArray(width);
+        }
+        this.indexMask = width - 1;
+        this.windowMillis = window.toMillis();
+        new SecureRandom().nextBytes(salt);
+    }
+
+    void increment(String key, long nowMillis) {
+        long window = nowMillis / windowMillis;
+        int[] indexes = indexes(key);
+        for (int row = 0; row < ROWS; row++) {
+            rows[row].updateAndGet(indexes[row], cell -> {
+                long current = advance(cell, window);
+                long count = Math.min(current & COUNT_MASK, COUNT_MASK - 1) + 1; //saturates instead of overflowing
+                return (current & ~COUNT_MASK) | count;
+            });
+        }
+    }
+
+    /**
+     * @return the estimated number of increments of the key during the last window length.
+     */
+    double estimate(String key, long nowMillis) {
+        long window = nowMillis / windowMillis;
+        double previousWeight = 1 - (double) (nowMillis % windowMillis) / windowMillis;
+        int[] indexes = indexes(key);
+        double estimate = Double.MAX_VALUE;
+        for (int row = 0; row < ROWS; row++) {
+            long cell = advance(rows[row].get(indexes[row]), window);
+            double count = ((cell >>> COUNT_BITS) & COUNT_MASK) * previousWeight + (cell & COUNT_MASK);
+            estimate = Math.min(estimate, count);
+        }
+        return estimate;
+    }
+
+    /**
+     * @return the time left until the current window ends and its count starts to fade out.
+     */
+    Duration untilNextWindow(long nowMillis) {
+        return Duration.ofMillis(windowMillis - nowMillis % windowMillis);
+    }
+
+    /**
+     * @return the cell as seen from {@code window}: unchanged if it belongs to it, with the current count moved to
+     * the previous one if it belongs to the window before, and empty if it's older.
+     */
+    private static long advance(long cell, long window) {
+        long cellWindow = cell >>> (2 * COUNT_BITS);
+        long target = window & WINDOW_MASK;
+        if (cellWindow == target) {
+            return cell;
+        }
+        long previous = cellWindow == ((target - 1) & WINDOW_MASK) ? cell & COUNT_MASK : 0;
+        return (target << (2 * COUNT_BITS)) | (previous << COUNT_BITS);
+    }
+
+    private int[] indexes(String key) {
+        byte[] hash;
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(salt);
+            hash = digest.digest(key.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e); //mandatory in every JVM
+        }
+        int[] indexes = new int[ROWS];
+        for (int row = 0; row < ROWS; row++) {
+            int offset = row * Integer.BYTES;
+            int value = ((hash[offset] & 0xff) << 24) | ((hash[offset + 1] & 0xff) << 16)
+                    | ((hash[offset + 2] & 0xff) << 8) | (hash[offset + 3] & 0xff);
+            indexes[row] = value & indexMask;
+        }
+        return indexes;
+    }
+}
@@ -21,6 +21,7 @@ package com.duberlyguarnizo.dummyjson.config;
 import com.duberlyguarnizo.dummyjson.appuser.AppUser;
 import com.duberlyguarnizo.dummyjson.appuser.AppUserRepository;
 import com.duberlyguarnizo.dummyjson.appuser.AppUserRole;
+import com.duberlyguarnizo.dummyjson.security.BoundedPasswordEncoder;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
@@ -33,7 +34,8 @@ import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
 
 @Configuration
 @EnableJpaAuditing
@@ -57,9 +59,28 @@ public class Beans {
 
     }
 
-    @Bean
-    PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    @Value("${auth.password-hashing.bcrypt-strength}")
+    int bcryptStrength;
+    @Value("${auth.password-hashing.threads}")
+    int passwordHashingThreads;
+    @Value("${auth.password-hashing.queue-capacity}")
+    int passwordHashingQueueCapacity;
+    @Value("${auth.password-hashing.retry-after}")
+    Duration passwordHashingRetryAfter;
+
+    /**
+     * BCrypt on its own bounded pool (see {@link BoundedPasswordEncoder}). With threads set to 0, half of the
+     * available processors are used, so a login burst can't take every core from the request threads.
+     */
+    @Bean(destroyMethod = "shutdown")
+    BoundedPasswordEncoder passwordEncoder() {
+        int threads = passwordHashingThreads > 0
+                ? passwordHashingThreads
+                : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(bcryptStrength),
+                threads,
+                passwordHashingQueueCapacity,
+                passwordHashingRetryAfter);
     }
 
     @Bean
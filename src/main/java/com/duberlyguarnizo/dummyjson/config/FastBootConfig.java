@@ -0,0 +1,75 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.duberlyguarnizo.dummyjson.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+
+import java.util.List;
+
+/**
+ * Configuration of the <i>fast-boot</i> profile: beans declared in the packages listed in
+ * <i>fast-boot.lazy-packages</i> are not on the request hot path, so they are only created when first used.
+ * <p>
+ * Like any {@code @Profile} configuration, it is ignored when the application runs with the AOT-generated bean
+ * definitions ({@code -Dspring.aot.enabled=true}): {@code processAot} fixes the bean set at build time, without this
+ * profile.
+ */
+@Configuration(proxyBeanMethods = false)
+@Profile("fast-boot")
+@Slf4j
+public class FastBootConfig {
+
+    @Bean
+    static BeanFactoryPostProcessor lazyNonHotBeans(Environment environment) {
+        List<String> lazyPackages = Binder.get(environment)
+                .bind("fast-boot.lazy-packages", String[].class)
+                .map(List::of)
+                .orElse(List.of());
+        return beanFactory -> {
+            int lazyBeans = 0;
+            for (String beanName : beanFactory.getBeanDefinitionNames()) {
+                BeanDefinition definition = beanFactory.getBeanDefinition(beanName);
+                String declaringClass = declaringClassName(definition);
+                if (declaringClass != null && lazyPackages.stream().anyMatch(declaringClass::startsWith)) {
+                    definition.setLazyInit(true);
+                    lazyBeans++;
+                }
+            }
+            log.info("fast-boot: {} beans from {} will be created on first use", lazyBeans, lazyPackages);
+        };
+    }
+
+    /**
+     * @return the class of the bean or, for beans created by @Bean methods, the class declaring the method.
+     */
+    private static String declaringClassName(BeanDefinition definition) {
+        if (definition instanceof AnnotatedBeanDefinition annotated && annotated.getFactoryMethodMetadata() != null) {
+            return annotated.getFactoryMethodMetadata().getDeclaringClassName();
+        }
+        return definition.getBeanClassName();
+    }
+}
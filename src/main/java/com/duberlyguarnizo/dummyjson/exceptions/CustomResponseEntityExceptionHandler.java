@@ -22,9 +22,11 @@ import com.duberlyguarnizo.dummyjson.util.ControllerUtils;
 import io.jsonwebtoken.JwtException;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.DisabledException;
@@ -154,6 +156,17 @@ public class CustomResponseEntityExceptionHandler extends ResponseEntityExceptio
         return pd;
     }
 
+    @ExceptionHandler(TooManyLoginAttemptsException.class)
+    public ResponseEntity<ProblemDetail> handleTooManyLoginAttemptsException(TooManyLoginAttemptsException e, WebRequest request) {
+        ProblemDetail pd = ProblemDetail.forStatus(HttpStatusCode.valueOf(429));
+        pd.setTitle(utils.getMessage("exception_auth_too_many_attempts"));
+        pd.setDetail(utils.getMessage("exception_auth_too_many_attempts_detail"));
+        pd.setProperty(HOSTNAME_KEY_TEXT, hostname);
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, e.getRetryAfter().toSeconds())))
+                .body(pd);
+    }
+
     //5xx errors
     @ExceptionHandler(RepositoryException.class)
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -165,6 +178,17 @@ public class CustomResponseEntityExceptionHandler extends ResponseEntityExceptio
         return pd;
     }
 
+    @ExceptionHandler(ServerBusyException.class)
+    public ResponseEntity<ProblemDetail> handleServerBusyException(ServerBusyException e, WebRequest request) {
+        ProblemDetail pd = ProblemDetail.forStatus(HttpStatusCode.valueOf(503));
+        pd.setTitle(utils.getMessage("exception_server_busy"));
+        pd.setDetail(utils.getMessage("exception_server_busy_detail"));
+        pd.setProperty(HOSTNAME_KEY_TEXT, hostname);
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, e.getRetryAfter().toSeconds())))
+                .body(pd);
+    }
+
     @ExceptionHandler(JwtException.class)
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     public ProblemDetail handleExpiredJwtException(Exception e, WebRequest request) {
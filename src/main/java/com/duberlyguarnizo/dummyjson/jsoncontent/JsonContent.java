@@ -23,18 +23,26 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import lombok.*;
 import org.hibernate.Hibernate;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.validator.constraints.Length;
 
 import java.io.Serial;
 import java.util.Objects;
 
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "jsonContent") //limits in ehcache.xml
 @Getter
 @Setter
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
 public class JsonContent extends AuditableEntity {
+    /**
+     * Unique index on (created_by, upper(name)): names are unique per owner, ignoring case (V7 migration).
+     */
+    public static final String UNIQUE_NAME_PER_OWNER = "json_content_created_by_upper_name_key";
+
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO)
     private Long id;
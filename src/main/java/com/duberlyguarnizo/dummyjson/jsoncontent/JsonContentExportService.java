@@ -0,0 +1,194 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.duberlyguarnizo.dummyjson.jsoncontent;
+
+import com.duberlyguarnizo.dummyjson.appuser.AppUserRepository;
+import com.duberlyguarnizo.dummyjson.exceptions.IdNotFoundException;
+import com.duberlyguarnizo.dummyjson.jsoncontent.dto.JsonContentDetailDto;
+import com.duberlyguarnizo.dummyjson.util.ControllerUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Export of every JSON content, or of one user's, as NDJSON or as a ZIP with one file per content. The rows are read
+ * through a forward-only JDBC cursor that fetches {@link #FETCH_SIZE} rows at a time (PostgreSQL only uses a cursor
+ * inside a transaction, hence the read-only one), and each row is written to the response as soon as it is read, so
+ * the memory used doesn't depend on the number of rows. There are no entities involved: a persistence context would
+ * keep every row it loads.
+ */
+@Slf4j
+@Service
+public class JsonContentExportService {
+    static final int FETCH_SIZE = 500;
+    private static final String SELECT = "select id, name, json, path, created_by, created_date, modified_by, modified_date from json_content";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final AppUserRepository appUserRepository;
+    private final ControllerUtils utils;
+    private final ObjectMapper objectMapper;
+
+    public JsonContentExportService(JdbcTemplate jdbcTemplate,
+                                    PlatformTransactionManager transactionManager,
+                                    AppUserRepository appUserRepository,
+                                    ControllerUtils utils,
+                                    ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.appUserRepository = appUserRepository;
+        this.utils = utils;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @param userId the id of the user whose contents are exported, or null to export all of them.
+     * @return the response body, that writes one {@link JsonContentDetailDto} per line, ordered by id.
+     */
+    @PreAuthorize("hasAnyAuthority('ADMIN', 'SUPERVISOR')")
+    public StreamingResponseBody exportNdjson(Long userId) {
+        checkUserExists(userId);
+        return output -> {
+            long count = forEachContent(userId, output, (rs, row) -> {
+                output.write(objectMapper.writeValueAsBytes(toDto(rs)));
+                output.write('\n');
+            });
+            log.info("NDJSON export of {}: {} JSON contents", userId == null ? "all users" : "user " + userId, count);
+        };
+    }
+
+    /**
+     * @param userId the id of the user whose contents are exported, or null to export all of them.
+     * @return the response body, that writes a ZIP with a <i>{createdBy}/{id}-{name}.json</i> file per content, whose
+     * text is the json of the content.
+     */
+    @PreAuthorize("hasAnyAuthority('ADMIN', 'SUPERVISOR')")
+    public StreamingResponseBody exportZip(Long userId) {
+        checkUserExists(userId);
+        return output -> {
+            var zip = new ZipOutputStream(output, StandardCharsets.UTF_8);
+            long count = forEachContent(userId, zip, (rs, row) -> {
+                zip.putNextEntry(new ZipEntry(rs.getLong("created_by") + "/" + rs.getLong("id") + "-"
+                        + fileName(rs.getString("name")) + ".json"));
+                String json = rs.getString("json");
+                if (json != null) {
+                    zip.write(json.getBytes(StandardCharsets.UTF_8));
+                }
+                zip.closeEntry();
+            });
+            zip.finish(); //not close: the container closes the response stream
+            log.info("ZIP export of {}: {} JSON contents", userId == null ? "all users" : "user " + userId, count);
+        };
+    }
+
+    private void checkUserExists(Long userId) {
+        if (userId != null && !appUserRepository.existsById(userId)) {
+            throw new IdNotFoundException(utils.getMessage("exception_id_not_found_user_detail", new Long[]{userId}));
+        }
+    }
+
+    /**
+     * Runs the cursor query and passes every row to the writer, flushing the output after each fetch.
+     *
+     * @return the number of rows written.
+     */
+    private long forEachContent(Long userId, OutputStream output, RowWriter writer) throws IOException {
+        String sql = SELECT + (userId == null ? "" : " where created_by = ?") + " order by id";
+        long[] count = {0};
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setFetchSize(FETCH_SIZE);
+                if (userId != null) {
+                    statement.setLong(1, userId);
+                }
+                return statement;
+            }, (RowCallbackHandler) rs -> {
+                try {
+                    writer.write(rs, count[0]++);
+                    if (count[0] % FETCH_SIZE == 0) {
+                        output.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e); //the client went away: ends the query and the transaction
+                }
+            }));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        output.flush();
+        return count[0];
+    }
+
+    private static JsonContentDetailDto toDto(ResultSet rs) throws SQLException {
+        return new JsonContentDetailDto(
+                rs.getObject("created_by", Long.class),
+                rs.getObject("modified_by", Long.class),
+                toZoned(rs.getTimestamp("created_date")),
+                toZoned(rs.getTimestamp("modified_date")),
+                rs.getLong("id"),
+                rs.getString("name"),
+                rs.getString("json"),
+                rs.getString("path"));
+    }
+
+    /**
+     * Same conversion as {@link com.duberlyguarnizo.dummyjson.jsoncontent.dto.JsonContentMapper#toZonedDateTime}.
+     */
+    private static ZonedDateTime toZoned(Timestamp timestamp) {
+        return timestamp == null ? null : ZonedDateTime.of(timestamp.toLocalDateTime(), ZoneId.of("UTC"));
+    }
+
+    /**
+     * @return the name with every character that is not safe in a file name replaced by '_', at most 100 characters.
+     */
+    static String fileName(String name) {
+        if (name == null || name.isBlank()) {
+            return "unnamed";
+        }
+        String safe = name.replaceAll("[^A-Za-z0-9._-]", "_");
+        return safe.length() > 100 ? safe.substring(0, 100) : safe;
+    }
+
+    @FunctionalInterface
+    private interface RowWriter {
+        void write(ResultSet rs, long row) throws SQLException, IOException;
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.duberlyguarnizo.dummyjson.jsoncontent;
+
+import com.duberlyguarnizo.dummyjson.auditing.CustomAuditorAware;
+import com.duberlyguarnizo.dummyjson.jsoncontent.dto.JsonContentCreationDto;
+import com.duberlyguarnizo.dummyjson.jsoncontent.dto.JsonContentMapper;
+import com.duberlyguarnizo.dummyjson.util.BoundedLineReader;
+import com.duberlyguarnizo.dummyjson.util.BoundedLineReader.Line;
+import com.duberlyguarnizo.dummyjson.util.ConstraintViolations;
+import com.duberlyguarnizo.dummyjson.util.ControllerUtils;
+import com.duberlyguarnizo.dummyjson.util.ImportLineResult;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk creation of JSON contents from NDJSON (one {@link JsonContentCreationDto} per line). Lines are read in chunks:
+ * each chunk is parsed and validated in parallel, checked for duplicated names with a single query, and inserted in
+ * one transaction with JDBC batching (ids come from the pooled <i>json_content_seq</i>, one sequence call per 50
+ * rows). If a name is taken by another request between the check and the insert, the chunk is saved again row by row
+ * so the violation is reported on its own line. The result of each line is written back as NDJSON as soon as its
+ * chunk is committed.
+ * <p>
+ * The owner is resolved on the request thread and set explicitly as creator and last modifier, since auditing can't
+ * resolve it on the thread that writes the response.
+ */
+@Slf4j
+@Service
+public class JsonContentImportService {
+    static final int CHUNK_SIZE = 500;
+    static final int MAX_LINE_LENGTH = 16 * 1024; //the json field is at most 2048 characters
+
+    private final JsonContentRepository repository;
+    private final JsonContentMapper mapper;
+    private final CustomAuditorAware auditorAware;
+    private final ControllerUtils utils;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+
+    public JsonContentImportService(JsonContentRepository repository,
+                                    JsonContentMapper mapper,
+                                    CustomAuditorAware auditorAware,
+                                    ControllerUtils utils,
+                                    ObjectMapper objectMapper,
+                                    Validator validator) {
+        this.repository = repository;
+        this.mapper = mapper;
+        this.auditorAware = auditorAware;
+        this.utils = utils;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+    }
+
+    /**
+     * Resolves the owner and the localized messages on the request thread, since the returned body runs on an async
+     * thread once the response has started.
+     *
+     * @param input the NDJSON request body.
+     * @return the response body, that imports the lines and writes one {@link ImportLineResult} per line.
+     */
+    @PreAuthorize("isAuthenticated()")
+    public StreamingResponseBody importNdjson(InputStream input) {
+        var ownerId = auditorAware
+                .getCurrentAuditor()
+                .orElseThrow(() -> new AccessDeniedException(utils.getMessage("error_auditor_empty")));
+        var messages = new Messages(
+                utils.getMessage("exception_import_invalid_line"),
+                utils.getMessage("exception_import_line_too_long", new Object[]{String.valueOf(MAX_LINE_LENGTH)}),
+                utils.getMessage("exception_repository_save_error_unique_name_json"),
+                utils.getMessage("exception_repository_save_error_invalid_json"));
+        return output -> importLines(ownerId, messages, input, output);
+    }
+
+    void importLines(Long ownerId, Messages messages, InputStream input, OutputStream output) throws IOException {
+        var reader = new BoundedLineReader(input, MAX_LINE_LENGTH);
+        List<Line> chunk = new ArrayList<>(CHUNK_SIZE);
+        int created = 0;
+        Line line;
+        while ((line = reader.next()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            chunk.add(line);
+            if (chunk.size() == CHUNK_SIZE) {
+                created += write(importChunk(ownerId, messages, chunk), output);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            created += write(importChunk(ownerId, messages, chunk), output);
+        }
+        log.info("NDJSON import of user {}: {} JSON contents created from {} lines", ownerId, created, reader.lineCount());
+    }
+
+    private List<ImportLineResult> importChunk(Long ownerId, Messages messages, List<Line> chunk) {
+        List<Parsed> parsed = chunk.parallelStream()
+                .map(line -> parse(line, messages))
+                .toList();
+
+        Set<String> requestedNames = parsed.stream()
+                .filter(p -> p.content() != null)
+                .map(p -> p.content().getName().toUpperCase(Locale.ROOT))
+                .collect(Collectors.toSet());
+        Set<String> takenNames = requestedNames.isEmpty()
+                ? new HashSet<>()
+                : new HashSet<>(repository.findUpperNamesByCreatedBy(ownerId, requestedNames));
+
+        ImportLineResult[] results = new ImportLineResult[parsed.size()];
+        List<JsonContent> toSave = new ArrayList<>();
+        List<Integer> toSaveIndexes = new ArrayList<>();
+        for (int i = 0; i < parsed.size(); i++) {
+            Parsed p = parsed.get(i);
+            if (p.content() == null) {
+                results[i] = ImportLineResult.failed(p.line(), p.error());
+            } else if (!takenNames.add(p.content().getName().toUpperCase(Locale.ROOT))) {
+                results[i] = ImportLineResult.failed(p.line(), messages.uniqueName());
+            } else {
+                p.content().setCreatedBy(ownerId);
+                p.content().setModifiedBy(ownerId);
+                toSave.add(p.content());
+                toSaveIndexes.add(i);
+            }
+        }
+        try {
+            List<JsonContent> saved = repository.saveAll(toSave);
+            for (int i = 0; i < saved.size(); i++) {
+                int index = toSaveIndexes.get(i);
+                results[index] = ImportLineResult.created(parsed.get(index).line(), saved.get(i).getId());
+            }
+        } catch (DataIntegrityViolationException e) {
+            //a name was taken by another request after the check: save one by one to find the rows
+            log.warn("NDJSON import of user {}: a chunk of {} JSON contents violated a constraint, saving them one by one", ownerId, toSave.size());
+            for (int i = 0; i < toSave.size(); i++) {
+                int index = toSaveIndexes.get(i);
+                results[index] = saveOne(toSave.get(i), parsed.get(index).line(), messages);
+            }
+        } catch (RuntimeException e) {
+            log.warn("NDJSON import of user {}: a chunk of {} JSON contents could not be saved: {}", ownerId, toSave.size(), e.getMessage());
+            for (int index : toSaveIndexes) {
+                results[index] = ImportLineResult.failed(parsed.get(index).line(), messages.saveError());
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    private ImportLineResult saveOne(JsonContent content, int line, Messages messages) {
+        content.setId(null); //assigned by the rolled back batch
+        try {
+            return ImportLineResult.created(line, repository.save(content).getId());
+        } catch (DataIntegrityViolationException e) {
+            return ImportLineResult.failed(line, ConstraintViolations.isViolationOf(e, JsonContent.UNIQUE_NAME_PER_OWNER)
+                    ? messages.uniqueName()
+                    : messages.saveError());
+        }
+    }
+
+    private Parsed parse(Line line, Messages messages) {
+        if (line.tooLong()) {
+            return Parsed.failed(line.number(), messages.lineTooLong());
+        }
+        JsonContentCreationDto dto;
+        try {
+            dto = objectMapper.readValue(line.text(), JsonContentCreationDto.class);
+        } catch (JsonProcessingException e) {
+            return Parsed.failed(line.number(), messages.invalidLine() + " " + e.getOriginalMessage());
+        }
+        JsonContent content = mapper.toEntity(dto);
+        Set<ConstraintViolation<JsonContent>> violations = validator.validate(content);
+        if (!violations.isEmpty()) {
+            String error = violations.stream()
+                    .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", "));
+            return Parsed.failed(line.number(), error);
+        }
+        return new Parsed(line.number(), content, null);
+    }
+
+    private int write(List<ImportLineResult> results, OutputStream output) throws IOException {
+        int created = 0;
+        for (ImportLineResult result : results) {
+            output.write(objectMapper.writeValueAsBytes(result));
+            output.write('\n');
+            if (result.getId() != null) {
+                created++;
+            }
+        }
+        output.flush();
+        return created;
+    }
+
+    record Messages(String invalidLine, String lineTooLong, String uniqueName, String saveError) {
+    }
+
+    private record Parsed(int line, JsonContent content, String error) {
+        static Parsed failed(int line, String error) {
+            return new Parsed(line, null, error);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.duberlyguarnizo.dummyjson.jsoncontent;
+
+/**
+ * Modifications scoped to the owner of a JSON content, each one a single statement with the ownership check in its
+ * WHERE clause: nothing is loaded first. A result of 0 means the JSON content doesn't exist or belongs to another
+ * user; callers that need to tell which check {@code existsById}, only in that case.
+ */
+public interface JsonContentOwnedRepository {
+    /**
+     * Sets the name, json and path (kept when null) of a JSON content owned by {@code ownerId}, and its
+     * modification audit fields.
+     *
+     * @return the number of updated rows, 1 or 0.
+     */
+    int updateOwned(Long id, Long ownerId, String name, String json, String path);
+
+    /**
+     * @return the number of deleted rows, 1 or 0.
+     */
+    int deleteOwned(Long id, Long ownerId);
+}
@@ -0,0 +1,78 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.duberlyguarnizo.dummyjson.jsoncontent;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+
+/**
+ * Runs the statements with JDBC, in the current transaction. A JPQL bulk statement would make Hibernate drop the
+ * whole {@code jsonContent} second-level cache region on every update or delete, so the statements bypass Hibernate
+ * and only the entry of the modified row is evicted: right away, and again when the transaction ends, in case a
+ * concurrent read cached the old row meanwhile. The persistence context isn't updated, so these methods are meant
+ * for transactions that didn't load the JSON content.
+ */
+class JsonContentOwnedRepositoryImpl implements JsonContentOwnedRepository {
+    private final JdbcTemplate jdbcTemplate;
+    private final Cache cache;
+
+    JsonContentOwnedRepositoryImpl(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+    }
+
+    @Override
+    public int updateOwned(Long id, Long ownerId, String name, String json, String path) {
+        int updated = jdbcTemplate.update("update json_content "
+                        + "set name = ?, json = ?, path = coalesce(?, path), modified_by = ?, modified_date = ? "
+                        + "where id = ? and created_by = ?",
+                name, json, path, ownerId, LocalDateTime.now(), id, ownerId);
+        evict(id, updated);
+        return updated;
+    }
+
+    @Override
+    public int deleteOwned(Long id, Long ownerId) {
+        int deleted = jdbcTemplate.update("delete from json_content where id = ? and created_by = ?", id, ownerId);
+        evict(id, deleted);
+        return deleted;
+    }
+
+    private void evict(Long id, int rows) {
+        if (rows == 0) {
+            return;
+        }
+        cache.evictEntityData(JsonContent.class, id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    cache.evictEntityData(JsonContent.class, id);
+                }
+            });
+        }
+    }
+}
@@ -18,16 +18,35 @@
 
 package com.duberlyguarnizo.dummyjson.jsoncontent;
 
+import com.duberlyguarnizo.dummyjson.jsoncontent.dto.JsonContentBasicDto;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
-public interface JsonContentRepository extends JpaRepository<JsonContent, Long> {
-    Page<JsonContent> findAllByCreatedBy(Long id, Pageable pageable);
+public interface JsonContentRepository extends JpaRepository<JsonContent, Long>, JsonContentOwnedRepository {
+    /*
+     * Listings select only the metadata columns into JsonContentBasicDto: loading the entities would read, and keep
+     * in the persistence context, the json body (up to 2048 characters) of every row only to drop it when mapping.
+     * Derived queries that return the DTO select its constructor arguments only; findAll can't be derived that way.
+     */
+    @Query(value = "select new com.duberlyguarnizo.dummyjson.jsoncontent.dto.JsonContentBasicDto(j.id, j.name, j.path) from JsonContent j",
+            countQuery = "select count(j) from JsonContent j")
+    Page<JsonContentBasicDto> findAllBasic(Pageable pageable);
+
+    Page<JsonContentBasicDto> findBasicByCreatedBy(Long createdBy, Pageable pageable);
 
-    Page<JsonContent> findByNameContainsIgnoreCase(String name, Pageable pageable);
+    Page<JsonContentBasicDto> findBasicByNameContainsIgnoreCase(String name, Pageable pageable);
 
-    Page<JsonContent> findByNameIgnoreCaseAndCreatedBy(String name, Long currentAuditorId, Pageable pageable);
+    /**
+     * @return which of the given upper-case names the user already uses (served by the (created_by, upper(name)) index).
+     */
+    @Query("select upper(j.name) from JsonContent j where j.createdBy = :createdBy and upper(j.name) in :upperNames")
+    List<String> findUpperNamesByCreatedBy(@Param("createdBy") Long createdBy, @Param("upperNames") Collection<String> upperNames);
 }
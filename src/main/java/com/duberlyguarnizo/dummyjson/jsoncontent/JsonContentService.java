@@ -27,18 +27,22 @@ import com.duberlyguarnizo.dummyjson.jsoncontent.dto.JsonContentBasicDto;
 import com.duberlyguarnizo.dummyjson.jsoncontent.dto.JsonContentCreationDto;
 import com.duberlyguarnizo.dummyjson.jsoncontent.dto.JsonContentDetailDto;
 import com.duberlyguarnizo.dummyjson.jsoncontent.dto.JsonContentMapper;
+import com.duberlyguarnizo.dummyjson.util.ConstraintViolations;
 import com.duberlyguarnizo.dummyjson.util.ControllerUtils;
 import jakarta.validation.Valid;
+import jakarta.validation.Validator;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 @Slf4j
 @Service
+@Transactional(readOnly = true)
 public class JsonContentService {
 
     private final JsonContentRepository repository;
@@ -46,15 +50,17 @@ public class JsonContentService {
     private final JsonContentMapper mapper;
     private final CustomAuditorAware auditorAware;
     private final ControllerUtils utils;
+    private final Validator validator;
 
 
-    public JsonContentService(JsonContentRepository repository, AppUserRepository appUserRepository, JsonContentMapper mapper, CustomAuditorAware auditorAware, ControllerUtils utils) {
+    public JsonContentService(JsonContentRepository repository, AppUserRepository appUserRepository, JsonContentMapper mapper, CustomAuditorAware auditorAware, ControllerUtils utils, Validator validator) {
         this.repository = repository;
         this.appUserRepository = appUserRepository;
         this.mapper = mapper;
         this.auditorAware = auditorAware;
 
         this.utils = utils;
+        this.validator = validator;
     }
 
     //CRUD
@@ -69,20 +75,16 @@ public class JsonContentService {
 
 
     public Page<JsonContentBasicDto> getByName(@Valid String name, Pageable page) {
-        var json = repository.findByNameContainsIgnoreCase(name, page);
-        return json.map(mapper::toBasicDto);
+        return repository.findBasicByNameContainsIgnoreCase(name, page);
     }
 
     @PreAuthorize("hasAnyAuthority('ADMIN', 'SUPERVISOR')")
     public Page<JsonContentBasicDto> getAllByUserId(Long id, Pageable page) {
         var userExist = appUserRepository.existsById(id);
         if (!userExist) {
-            log.warn("number of users: " + repository.count());
-            repository.findAll().forEach(element -> log.warn("element with id: " + element.getId()));
             throw new IdNotFoundException("user with id " + id + " does not exist!"); //TODO: localize this
         }
-        var jsonList = repository.findAllByCreatedBy(id, page);
-        return jsonList.map(mapper::toBasicDto);
+        return repository.findBasicByCreatedBy(id, page);
     }
 
     @PreAuthorize("isAuthenticated()")
@@ -92,90 +94,71 @@ public class JsonContentService {
             throw new AccessDeniedException(utils.getMessage("error_list_no_permissions"));
         } else {
             Long currentUserId = currentAuditor.get();
-            return repository.findAllByCreatedBy(currentUserId, page)
-                    .map(mapper::toBasicDto);
+            return repository.findBasicByCreatedBy(currentUserId, page);
         }
     }
 
     @PreAuthorize("hasAnyAuthority('ADMIN', 'SUPERVISOR')") //Only admins and supervisors can list all JSONs
     public Page<JsonContentBasicDto> getAllByAnyUser(Pageable page) {
-        return repository.findAll(page)
-                .map(mapper::toBasicDto);
+        return repository.findAllBasic(page);
     }
 
     @PreAuthorize("isAuthenticated()")
+    @Transactional
     public Long create(@Valid JsonContentCreationDto jsonDto) {
-        var currentAuditorId = auditorAware
+        auditorAware
                 .getCurrentAuditor()
                 .orElseThrow(() -> new AccessDeniedException(utils.getMessage("error_auditor_empty")));
-        boolean isUnique = repository.findByNameIgnoreCaseAndCreatedBy(jsonDto.getName(), currentAuditorId, PageRequest.ofSize(2)).isEmpty();
-        if (!isUnique) {
-            throw new RepositoryException(utils.getMessage("exception_repository_save_error_unique_name_json"));
-        }
-        var json = mapper.toEntity(jsonDto);
-        try {
-            var savedJson = repository.save(json);
-            return savedJson.getId();
-        } catch (RuntimeException e) {
-            throw new RepositoryException(utils.getMessage("exception_repository_save_error_invalid_json"));
-        }
+        //no lookup of the name first: the unique index rejects a taken one, and the insert is the only statement
+        return saveNow(mapper.toEntity(jsonDto)).getId();
     }
 
     @PreAuthorize("isAuthenticated()")
+    @Transactional
     public void updateOwnJsonContent(Long jsonId, @Valid JsonContentCreationDto jsonDto) {
         //We could use @PostAuthorize, but that would remove our ability to throw ProblemDetail exceptions
         var currentAuditorId = auditorAware
                 .getCurrentAuditor()
                 .orElseThrow(() -> new AccessDeniedException(utils.getMessage("error_auditor_empty")));
-
-        var jsonContent = repository
-                .findById(jsonId)
-                .orElseThrow(() -> new IdNotFoundException(
-                        utils.getMessage("exception_id_not_found_json_detail", new Long[]{jsonId})));
-        if (!jsonContent.getCreatedBy().equals(currentAuditorId)) {
-            throw new NotOwnedObjectException(utils.getMessage("error_update_not_the_owner"));
+        //the entity isn't loaded, so its constraints are checked here instead of on flush
+        if (!validator.validate(mapper.toEntity(jsonDto)).isEmpty()) {
+            throw new RepositoryException(utils.getMessage("exception_repository_save_error_invalid_json"));
         }
-
-        boolean isUnique = repository
-                .findByNameIgnoreCaseAndCreatedBy(jsonDto.getName(), currentAuditorId, PageRequest.ofSize(2))
-                .isEmpty();
-        //check for original entity name, that name can be duplicated
-        if (!isUnique && !jsonContent.getName().equals(jsonDto.getName())) {
-            throw new RepositoryException(utils.getMessage("exception_repository_save_error_unique_name_json"));
+        int updated;
+        try {
+            updated = repository.updateOwned(jsonId, currentAuditorId, jsonDto.getName(), jsonDto.getJson(), jsonDto.getPath());
+        } catch (RuntimeException e) {
+            throw saveError(e);
+        }
+        if (updated == 0) {
+            throw missingOrNotOwned(jsonId, "error_update_not_the_owner");
         }
-
-        var updatedJson = mapper.partialUpdate(jsonDto, jsonContent);
-        repository.save(updatedJson);
     }
 
     @PreAuthorize("hasAnyAuthority('ADMIN', 'SUPERVISOR')")
+    @Transactional
     public void updateAnyJsonContent(Long jsonId, @Valid JsonContentCreationDto jsonDto) {
         //We could use @PostAuthorize, but that would remove our ability to throw ProblemDetail exceptions
         var jsonContent = repository
                 .findById(jsonId)
                 .orElseThrow(() -> new IdNotFoundException
                         (utils.getMessage("exception_id_not_found_json_detail", new Long[]{jsonId})));
-        var updatedJson = mapper.partialUpdate(jsonDto, jsonContent);
-        repository.save(updatedJson);
+        saveNow(mapper.partialUpdate(jsonDto, jsonContent));
     }
 
     @PreAuthorize("isAuthenticated()")
+    @Transactional
     public void deleteOwnJsonContent(Long id) {
         var currentAuditorId = auditorAware
                 .getCurrentAuditor()
                 .orElseThrow(() -> new AccessDeniedException(utils.getMessage("error_auditor_empty")));
-        var jsonContent = repository
-                .findById(id)
-                .orElseThrow(() -> new IdNotFoundException(utils.getMessage("exception_id_not_found_json_detail", new Long[]{id})));
-        if (!jsonContent
-                .getCreatedBy()
-                .equals(currentAuditorId)) {
-            throw new NotOwnedObjectException(utils.getMessage("error_delete_not_the_owner"));
+        if (repository.deleteOwned(id, currentAuditorId) == 0) {
+            throw missingOrNotOwned(id, "error_delete_not_the_owner");
         }
-        repository.deleteById(id);
     }
 
     @PreAuthorize("hasAnyAuthority('ADMIN', 'SUPERVISOR')")
+    @Transactional
     public void deleteAnyJsonContent(Long id) {
         var jsonContent = repository
                 .findById(id)
@@ -183,6 +166,33 @@ public class JsonContentService {
         repository.deleteById(jsonContent.getId());
     }
 
+    /**
+     * Writes the JSON content now instead of at commit, so a name taken by another JSON content of the same owner
+     * (rejected by {@link JsonContent#UNIQUE_NAME_PER_OWNER}) is reported as such.
+     */
+    private JsonContent saveNow(JsonContent jsonContent) {
+        try {
+            return repository.saveAndFlush(jsonContent);
+        } catch (RuntimeException e) {
+            throw saveError(e);
+        }
+    }
+
+    private RepositoryException saveError(RuntimeException e) {
+        if (e instanceof DataIntegrityViolationException && ConstraintViolations.isViolationOf(e, JsonContent.UNIQUE_NAME_PER_OWNER)) {
+            return new RepositoryException(utils.getMessage("exception_repository_save_error_unique_name_json"));
+        }
+        return new RepositoryException(utils.getMessage("exception_repository_save_error_invalid_json"));
+    }
 
+    /**
+     * Called when an owner-scoped statement changed no row, to tell why: a cheap existence probe, only on failure.
+     */
+    private RuntimeException missingOrNotOwned(Long id, String notOwnerMessageKey) {
+        if (repository.existsById(id)) {
+            return new NotOwnedObjectException(utils.getMessage(notOwnerMessageKey));
+        }
+        return new IdNotFoundException(utils.getMessage("exception_id_not_found_json_detail", new Long[]{id}));
+    }
 }
 
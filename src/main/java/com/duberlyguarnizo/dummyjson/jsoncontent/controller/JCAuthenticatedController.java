@@ -18,20 +18,27 @@
 
 package com.duberlyguarnizo.dummyjson.jsoncontent.controller;
 
+import com.duberlyguarnizo.dummyjson.jsoncontent.JsonContentImportService;
 import com.duberlyguarnizo.dummyjson.jsoncontent.JsonContentService;
 import com.duberlyguarnizo.dummyjson.jsoncontent.dto.JsonContentBasicDto;
 import com.duberlyguarnizo.dummyjson.jsoncontent.dto.JsonContentCreationDto;
 import com.duberlyguarnizo.dummyjson.jsoncontent.dto.JsonContentDetailDto;
+import com.duberlyguarnizo.dummyjson.query_budget.QueryBudget;
 import com.duberlyguarnizo.dummyjson.util.ControllerUtils;
+import com.duberlyguarnizo.dummyjson.util.PageResponse;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
 
 @RestController
 @RequestMapping("/api/v1/authenticated/json")
@@ -39,44 +46,66 @@ import org.springframework.web.bind.annotation.*;
 @Tag(name = "Authenticated", description = "Endpoints for authenticated users, specifically for managing its own JSON content")
 public class JCAuthenticatedController {
     JsonContentService service;
+    private final JsonContentImportService importService;
     private final ControllerUtils utils;
 
-    public JCAuthenticatedController(JsonContentService service, ControllerUtils utils) {
+    public JCAuthenticatedController(JsonContentService service, JsonContentImportService importService, ControllerUtils utils) {
         this.service = service;
+        this.importService = importService;
         this.utils = utils;
     }
 
 
+    @QueryBudget(2)
     @GetMapping("/{id}")
     public ResponseEntity<JsonContentDetailDto> getJsonContentDetail(@PathVariable Long id) {
         var jsonDto = service.getById(id);
         return ResponseEntity.ok(jsonDto);
     }
 
+    @QueryBudget(3)
     @GetMapping
-    public ResponseEntity<Page<JsonContentBasicDto>> getJsonContentCurrentUserList(@RequestParam(required = false, defaultValue = "0") int page,
+    public ResponseEntity<PageResponse<JsonContentBasicDto>> getJsonContentCurrentUserList(@RequestParam(required = false, defaultValue = "0") int page,
                                                                                    @RequestParam(required = false, defaultValue = "15") int size,
                                                                                    @RequestParam(required = false, defaultValue = "id,desc") String[] sort) {
         PageRequest pageRequest = PageRequest.of(page,
                 size,
                 Sort.by(utils.processPageSort(sort)));
         var jsonDtoList = service.getAllByCurrentUser(pageRequest);
-        return ResponseEntity.ok(jsonDtoList);
+        return ResponseEntity.ok(PageResponse.of(jsonDtoList));
     }
 
 
+    @QueryBudget(2) //the insert, and the id sequence when its pooled block runs out
     @PostMapping
     public ResponseEntity<Long> createJsonContentDetail(@Valid @RequestBody JsonContentCreationDto jsonDto) {
         Long id = service.create(jsonDto);
         return new ResponseEntity<>(id, HttpStatus.CREATED);
     }
 
+    /**
+     * Creates many JSON contents from an NDJSON body, one creation object per line (the same fields as the POST of a
+     * single one). The response is streamed as NDJSON while the import runs, with one line per input line: the id of
+     * the created content, or the error that prevented it. Invalid lines don't stop the import.
+     *
+     * @param request the request, whose body is read while the response is written.
+     * @return HTTP 200 with one JSON object per imported line.
+     */
+    @PostMapping(path = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> importJsonContents(HttpServletRequest request) throws IOException {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(importService.importNdjson(request.getInputStream()));
+    }
+
+    @QueryBudget(2) //the owner-scoped update, and the existence probe when it changes no row
     @PatchMapping("/{id}")
     public ResponseEntity<Void> updateJsonContentDetail(@PathVariable Long id, @Valid @RequestBody JsonContentCreationDto jsonDto) {
         service.updateOwnJsonContent(id, jsonDto);
         return ResponseEntity.noContent().build();
     }
 
+    @QueryBudget(2) //the owner-scoped delete, and the existence probe when it deletes no row
     @DeleteMapping("{id}")
     public ResponseEntity<Void> deleteJsonContentDetail(@PathVariable Long id) {
         service.deleteOwnJsonContent(id);
@@ -18,20 +18,26 @@
 
 package com.duberlyguarnizo.dummyjson.jsoncontent.controller;
 
+import com.duberlyguarnizo.dummyjson.jsoncontent.JsonContentExportService;
 import com.duberlyguarnizo.dummyjson.jsoncontent.JsonContentService;
 import com.duberlyguarnizo.dummyjson.jsoncontent.dto.JsonContentBasicDto;
 import com.duberlyguarnizo.dummyjson.jsoncontent.dto.JsonContentCreationDto;
 import com.duberlyguarnizo.dummyjson.jsoncontent.dto.JsonContentDetailDto;
+import com.duberlyguarnizo.dummyjson.query_budget.QueryBudget;
 import com.duberlyguarnizo.dummyjson.util.ControllerUtils;
+import com.duberlyguarnizo.dummyjson.util.PageResponse;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/api/v1/management/json")
@@ -40,21 +46,25 @@ import org.springframework.web.bind.annotation.*;
 @Tag(name = "Management", description = "Endpoints for managers to administer JSON content created by users")
 public class JCManagementController {
     JsonContentService service;
+    private final JsonContentExportService exportService;
     private final ControllerUtils utils;
 
-    public JCManagementController(JsonContentService service, ControllerUtils utils) {
+    public JCManagementController(JsonContentService service, JsonContentExportService exportService, ControllerUtils utils) {
         this.service = service;
+        this.exportService = exportService;
         this.utils = utils;
     }
 
+    @QueryBudget(2)
     @GetMapping("/{id}")
     public ResponseEntity<JsonContentDetailDto> getJsonContentDetail(@PathVariable Long id) {
         var jsonDto = service.getById(id);
         return ResponseEntity.ok(jsonDto);
     }
 
+    @QueryBudget(4)
     @GetMapping("/by-user/{id}")
-    public ResponseEntity<Page<JsonContentBasicDto>> getJsonContentDetailByIdForUser(@PathVariable Long id,
+    public ResponseEntity<PageResponse<JsonContentBasicDto>> getJsonContentDetailByIdForUser(@PathVariable Long id,
                                                                                      @RequestParam(required = false, defaultValue = "0") int page,
                                                                                      @RequestParam(required = false, defaultValue = "15") int size,
                                                                                      @RequestParam(required = false, defaultValue = "id,desc") String[] sort) {
@@ -62,26 +72,74 @@ public class JCManagementController {
                 size,
                 Sort.by(utils.processPageSort(sort)));
         var jsonDto = service.getAllByUserId(id, pageRequest);
-        return ResponseEntity.ok(jsonDto);
+        return ResponseEntity.ok(PageResponse.of(jsonDto));
     }
 
+    @QueryBudget(3)
     @GetMapping()
-    public ResponseEntity<Page<JsonContentBasicDto>> getJsonContentAllList(@RequestParam(required = false, defaultValue = "0") int page,
+    public ResponseEntity<PageResponse<JsonContentBasicDto>> getJsonContentAllList(@RequestParam(required = false, defaultValue = "0") int page,
                                                                            @RequestParam(required = false, defaultValue = "15") int size,
                                                                            @RequestParam(required = false, defaultValue = "id,desc") String[] sort) {
         PageRequest pageRequest = PageRequest.of(page,
                 size,
                 Sort.by(utils.processPageSort(sort)));
         var jsonDtoList = service.getAllByAnyUser(pageRequest);
-        return ResponseEntity.ok(jsonDtoList);
+        return ResponseEntity.ok(PageResponse.of(jsonDtoList));
+    }
+
+    /**
+     * Exports every JSON content, streamed from a database cursor while the response is written.
+     *
+     * @param format NDJSON (one JSON content detail per line) or ZIP (one file per JSON content, with its json).
+     * @return HTTP 200 with the export as body.
+     */
+    @QueryBudget(1)
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportJsonContents(@RequestParam(required = false, defaultValue = "NDJSON") ExportFormat format) {
+        return export(format, "json-content", format == ExportFormat.ZIP
+                ? exportService.exportZip(null)
+                : exportService.exportNdjson(null));
+    }
+
+    /**
+     * Exports the JSON contents of a user, like {@link #exportJsonContents(ExportFormat)}.
+     *
+     * @param id     the id of the user.
+     * @param format NDJSON or ZIP.
+     * @return HTTP 200 with the export as body, or 404 if the user doesn't exist.
+     */
+    @QueryBudget(2)
+    @GetMapping("/export/by-user/{id}")
+    public ResponseEntity<StreamingResponseBody> exportJsonContentsForUser(@PathVariable Long id,
+                                                                           @RequestParam(required = false, defaultValue = "NDJSON") ExportFormat format) {
+        return export(format, "json-content-user-" + id, format == ExportFormat.ZIP
+                ? exportService.exportZip(id)
+                : exportService.exportNdjson(id));
+    }
+
+    private static ResponseEntity<StreamingResponseBody> export(ExportFormat format, String fileName, StreamingResponseBody body) {
+        boolean zip = format == ExportFormat.ZIP;
+        return ResponseEntity.ok()
+                .contentType(zip ? MediaType.parseMediaType("application/zip") : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(fileName + (zip ? ".zip" : ".ndjson"))
+                        .build()
+                        .toString())
+                .body(body);
+    }
+
+    public enum ExportFormat {
+        NDJSON, ZIP
     }
 
+    @QueryBudget(3)
     @PatchMapping("/{id}")
     public ResponseEntity<Void> updateJsonContentDetail(@PathVariable Long id, @Valid @RequestBody JsonContentCreationDto jsonDto) {
         service.updateAnyJsonContent(id, jsonDto);
         return ResponseEntity.noContent().build();
     }
 
+    @QueryBudget(3)
     @DeleteMapping("{id}")
     public ResponseEntity<Void> deleteJsonContentDetail(@PathVariable Long id) {
         service.deleteAnyJsonContent(id);
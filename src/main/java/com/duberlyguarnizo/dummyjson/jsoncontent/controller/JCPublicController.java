@@ -21,9 +21,10 @@ package com.duberlyguarnizo.dummyjson.jsoncontent.controller;
 import com.duberlyguarnizo.dummyjson.jsoncontent.JsonContentService;
 import com.duberlyguarnizo.dummyjson.jsoncontent.dto.JsonContentBasicDto;
 import com.duberlyguarnizo.dummyjson.jsoncontent.dto.JsonContentDetailDto;
+import com.duberlyguarnizo.dummyjson.query_budget.QueryBudget;
 import com.duberlyguarnizo.dummyjson.util.ControllerUtils;
+import com.duberlyguarnizo.dummyjson.util.PageResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
 import org.springframework.http.ResponseEntity;
@@ -44,18 +45,20 @@ public class JCPublicController {
         this.utils = utils;
     }
 
+    @QueryBudget(2)
     @GetMapping("/{id}")
     public ResponseEntity<JsonContentDetailDto> getJsonContentDetail(@PathVariable Long id) {
         var jsonDto = service.getById(id);
         return ResponseEntity.ok(jsonDto);
     }
 
+    @QueryBudget(2)
     @GetMapping //TODO: implement endpoint for top or recent public json
-    public ResponseEntity<Page<JsonContentBasicDto>> getJsonContentDetailByName(@RequestParam(name = "name") String name,
+    public ResponseEntity<PageResponse<JsonContentBasicDto>> getJsonContentDetailByName(@RequestParam(name = "name") String name,
                                                                                 @PageableDefault(sort = {"id"}) Pageable page) {
 
         var jsonDto = service.getByName(URLDecoder.decode(name, StandardCharsets.UTF_8), page);
-        return ResponseEntity.ok(jsonDto);
+        return ResponseEntity.ok(PageResponse.of(jsonDto));
     }
 
 
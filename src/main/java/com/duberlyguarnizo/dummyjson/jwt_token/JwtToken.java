@@ -34,8 +34,12 @@ public class JwtToken {
     @GeneratedValue(strategy = GenerationType.AUTO)
     private Long id;
     private Long userId;
-    @Column(unique = true)
-    private String token;
+    /**
+     * SHA-256 of the refresh token (see {@link com.duberlyguarnizo.dummyjson.security.TokenDigests}): a fixed 32-byte
+     * key, and a copy of the table doesn't leak usable tokens.
+     */
+    @Column(unique = true, nullable = false, length = 32)
+    private byte[] tokenDigest;
     private boolean revoked;
     private boolean expired;
     private LocalDateTime createdDate;
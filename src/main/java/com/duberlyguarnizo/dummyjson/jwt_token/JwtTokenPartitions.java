@@ -0,0 +1,125 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.duberlyguarnizo.dummyjson.jwt_token;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.regex.Pattern;
+
+/**
+ * Maintains the daily partitions of <i>jwt_token</i> (see the V6 migration): creates them a few days ahead, so
+ * inserts never land in the default partition, and drops the ones whose rows are all past the retention period,
+ * which is a catalog operation instead of a delete of every row.
+ * <p>
+ * It only acts when <i>jwt_token</i> is a partitioned PostgreSQL table; on other databases (like the H2 one of the
+ * load test) the batched deletes of {@link JwtTokenService} do all the cleanup.
+ */
+@Slf4j
+@Component
+public class JwtTokenPartitions {
+    static final int DAYS_AHEAD = 2;
+    private static final String PREFIX = "jwt_token_p";
+    private static final Pattern PARTITION_NAME = Pattern.compile(PREFIX + "\\d{8}");
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.BASIC_ISO_DATE; //yyyyMMdd, as in the migration
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile boolean partitioned;
+
+    public JwtTokenPartitions(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    void init() {
+        try {
+            partitioned = "p".equals(jdbcTemplate.queryForObject(
+                    "select relkind from pg_class where oid = to_regclass('jwt_token')", String.class));
+        } catch (DataAccessException e) {
+            partitioned = false; //not PostgreSQL
+        }
+        log.info("jwt_token is {}partitioned", partitioned ? "" : "not ");
+        createAhead();
+    }
+
+    public boolean isPartitioned() {
+        return partitioned;
+    }
+
+    /**
+     * Creates the partitions from today to {@link #DAYS_AHEAD} days ahead, if they don't exist.
+     */
+    @Scheduled(cron = "0 0 * * * *") //every hour
+    public void createAhead() {
+        if (!partitioned) {
+            return;
+        }
+        LocalDate today = LocalDate.now(); //the same clock that sets JwtToken.createdDate
+        for (int i = 0; i <= DAYS_AHEAD; i++) {
+            LocalDate day = today.plusDays(i);
+            try {
+                jdbcTemplate.execute("create table if not exists " + PREFIX + day.format(SUFFIX)
+                        + " partition of jwt_token for values from ('" + day + "') to ('" + day.plusDays(1) + "')");
+            } catch (DataAccessException e) {
+                // e.g. the default partition already has rows of that day: they are deleted by the batched cleanup
+                log.warn("Could not create the jwt_token partition of {}: {}", day, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Drops the daily partitions whose whole range is before {@code cutoff}.
+     *
+     * @return the number of partitions dropped.
+     */
+    public int dropBefore(LocalDateTime cutoff) {
+        if (!partitioned) {
+            return 0;
+        }
+        var partitions = jdbcTemplate.queryForList(
+                "select c.relname from pg_inherits i join pg_class c on c.oid = i.inhrelid "
+                        + "where i.inhparent = 'jwt_token'::regclass", String.class);
+        int dropped = 0;
+        for (String partition : partitions) {
+            if (PARTITION_NAME.matcher(partition).matches() && !end(partition).isAfter(cutoff)) {
+                jdbcTemplate.execute("drop table if exists " + partition); //another node may have dropped it
+                log.info("Dropped the jwt_token partition {}", partition);
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+
+    private static LocalDateTime end(String partition) {
+        try {
+            return LocalDate.parse(partition.substring(PREFIX.length()), SUFFIX).plusDays(1).atStartOfDay();
+        } catch (DateTimeParseException e) {
+            return LocalDateTime.MAX; //not one of ours, never dropped
+        }
+    }
+}
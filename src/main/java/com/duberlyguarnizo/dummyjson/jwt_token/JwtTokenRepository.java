@@ -18,8 +18,15 @@
 
 package com.duberlyguarnizo.dummyjson.jwt_token;
 
+import com.duberlyguarnizo.dummyjson.security.TokenDigests;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -29,8 +36,54 @@ import java.util.Optional;
 public interface JwtTokenRepository extends JpaRepository<JwtToken, Long> {
     List<JwtToken> findByUserId(Long id);
 
-    Optional<JwtToken> findByToken(String token);
+    Optional<JwtToken> findByTokenDigest(byte[] tokenDigest);
 
-    List<JwtToken> findByCreatedDateBefore(LocalDateTime date);
+    default Optional<JwtToken> findByToken(String token) {
+        return findByTokenDigest(TokenDigests.sha256(token));
+    }
+
+    /**
+     * Marks as expired up to {@code batchSize} tokens created before {@code date}, in one statement.
+     *
+     * @return the number of tokens expired, lower than {@code batchSize} when there are no more.
+     */
+    @Transactional
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "jwt_token")) //else every cache region is evicted
+    @Query(value = "update jwt_token set expired = true where id in "
+            + "(select id from jwt_token where created_date < :date and expired = false limit :batchSize)", nativeQuery = true)
+    int expireCreatedBefore(LocalDateTime date, int batchSize);
+
+    /**
+     * Deletes up to {@code batchSize} expired tokens created before {@code date}, in one statement.
+     *
+     * @return the number of tokens deleted, lower than {@code batchSize} when there are no more.
+     */
+    @Transactional
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "jwt_token")) //else every cache region is evicted
+    @Query(value = "delete from jwt_token where id in "
+            + "(select id from jwt_token where created_date < :date and expired = true limit :batchSize)", nativeQuery = true)
+    int deleteExpiredCreatedBefore(LocalDateTime date, int batchSize);
+
+    /**
+     * Revokes a refresh token unless it already was, so two concurrent refreshes with the same token can't both
+     * succeed.
+     *
+     * @return 1 if this call revoked it, 0 otherwise.
+     */
+    @Transactional
+    @Modifying
+    @Query("update JwtToken t set t.revoked = true where t.id = :id and t.revoked = false")
+    int revokeIfActive(Long id);
+
+    /**
+     * Ends every session of a user. The rows are deleted rather than revoked, so a revoked row always means the token
+     * was exchanged and presenting it again is a reuse.
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from JwtToken t where t.userId = :userId")
+    int deleteAllByUserId(Long userId);
 
 }
@@ -18,29 +18,54 @@
 
 package com.duberlyguarnizo.dummyjson.jwt_token;
 
+import com.duberlyguarnizo.dummyjson.appuser.AppUser;
+import com.duberlyguarnizo.dummyjson.appuser.AppUserRepository;
 import com.duberlyguarnizo.dummyjson.exceptions.ForbiddenActionException;
 import com.duberlyguarnizo.dummyjson.exceptions.IdNotFoundException;
+import com.duberlyguarnizo.dummyjson.exceptions.JwtValidationException;
 import com.duberlyguarnizo.dummyjson.exceptions.RepositoryException;
+import com.duberlyguarnizo.dummyjson.security.AuthEventPublisher;
+import com.duberlyguarnizo.dummyjson.security.JwtPrincipal;
 import com.duberlyguarnizo.dummyjson.security.JwtUtil;
+import com.duberlyguarnizo.dummyjson.security.TokenDigests;
 import com.duberlyguarnizo.dummyjson.util.ControllerUtils;
+import io.jsonwebtoken.Claims;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
+import java.security.SecureRandom;
 import java.time.LocalDateTime;
+import java.util.Base64;
 import java.util.List;
+import java.util.function.IntUnaryOperator;
 
+/**
+ * Issues and revokes tokens. The <i>jwt_token</i> table holds refresh tokens only: access tokens are short-lived
+ * JWTs that are never persisted, and each of them carries the id of the refresh token it was issued with (its
+ * session), so logout can revoke the session.
+ */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class JwtTokenService {
     private final JwtTokenRepository tokenRepository;
     private final JwtUtil jwtUtil;
     private final ControllerUtils utils;
+    private final RevokedTokenRegistry revokedTokens;
+    private final TokenEpochs tokenEpochs;
+    private final AppUserRepository userRepository;
+    private final JwtTokenPartitions partitions;
+    private final AuthEventPublisher events;
 
-
-    private static final int EXPIRATION_TIME = 1000 * 60 * 60 * 10;
+    private static final int EXPIRATION_TIME = 1000 * 60 * 60 * 10; //refresh tokens expire in 10 hours
+    private static final int REFRESH_TOKEN_BYTES = 32;
+    private static final int LIFECYCLE_BATCH_SIZE = 5_000; //rows per statement, so each transaction stays short
+    private static final SecureRandom RANDOM = new SecureRandom();
 
     public List<JwtToken> getTokensByUserId(Long userId) {
         var tokenList = tokenRepository.findByUserId(userId);
@@ -60,15 +85,57 @@ public class JwtTokenService {
         }
     }
 
-    public void saveToken(String jwt, Long userId) {
+    public JwtToken saveToken(String refreshToken, Long userId) {
         JwtToken jwtToken = JwtToken.builder()
-                .token(jwt)
+                .tokenDigest(TokenDigests.sha256(refreshToken))
                 .userId(userId)
                 .expired(false)
                 .revoked(false)
                 .createdDate(LocalDateTime.now())
                 .build();
-        tokenRepository.save(jwtToken);
+        return tokenRepository.save(jwtToken);
+    }
+
+    /**
+     * Starts a session for an authenticated user: persists a new refresh token and signs an access token bound to it.
+     */
+    public TokenPair issueTokens(AppUser user) {
+        String refreshToken = newRefreshToken();
+        JwtToken session = saveToken(refreshToken, user.getId());
+        String accessToken = jwtUtil.generateToken(user, tokenEpochs.current(user.getId()), session.getId());
+        return new TokenPair(accessToken, refreshToken);
+    }
+
+    /**
+     * Exchanges a refresh token for a new pair. Refresh tokens are single use: presenting one that was already
+     * exchanged means it was copied, so every session of its user is revoked (the legitimate client has to log in
+     * again, but so does whoever copied it).
+     *
+     * @throws JwtValidationException if the refresh token is unknown, expired or was already exchanged, or its user
+     *                                can no longer log in.
+     */
+    public TokenPair refreshTokens(String refreshToken) {
+        JwtToken token = tokenRepository.findByToken(refreshToken).orElseThrow(JwtValidationException::new);
+        if (token.isExpired() || token.getCreatedDate().isBefore(LocalDateTime.now().minusHours(10))) {
+            throw new JwtValidationException();
+        }
+        if (token.isRevoked() || tokenRepository.revokeIfActive(token.getId()) == 0) {
+            log.warn("Refresh token {} of user {} was used twice, revoking all the user sessions", token.getId(), token.getUserId());
+            tokenRepository.deleteAllByUserId(token.getUserId());
+            tokenEpochs.bump(token.getUserId());
+            throw new JwtValidationException();
+        }
+        //loaded again, so role and username changes reach the new access token
+        AppUser user = userRepository.findById(token.getUserId())
+                .filter(u -> u.isEnabled() && u.isAccountNonLocked())
+                .orElseThrow(JwtValidationException::new);
+        return issueTokens(user);
+    }
+
+    private static String newRefreshToken() {
+        byte[] bytes = new byte[REFRESH_TOKEN_BYTES];
+        RANDOM.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
     }
 
     public void revokeToken(String headerToken) {
@@ -81,9 +148,17 @@ public class JwtTokenService {
         }
         if (username != null && SecurityContextHolder.getContext().getAuthentication() != null) {
             // username and authentication exists, so logout:
-            var token = getTokenByJwtString(jwt);
-            token.setRevoked(true);
-            tokenRepository.save(token);
+            Claims claims = jwtUtil.extractAllClaims(jwt);
+            Long sessionId = jwtUtil.extractSessionId(claims);
+            if (sessionId != null) {
+                tokenRepository.deleteById(sessionId);
+            } else { //issued before refresh tokens, when the access token itself was persisted
+                var token = getTokenByJwtString(jwt);
+                token.setRevoked(true);
+                tokenRepository.save(token);
+            }
+            revokedTokens.revoke(jwt, claims.getExpiration().toInstant());
+            events.tokenRevoked(jwt, claims.getExpiration().toInstant());
         } else {
             throw new ForbiddenActionException(utils.getMessage("error_auditor_empty"));
         }
@@ -98,15 +173,11 @@ public class JwtTokenService {
             username = jwtUtil.extractUsername(jwt);
         }
 
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() != null) {
-            // username and authentication exists, so logout:
-            var token = getTokenByJwtString(jwt);
-            var allTokens = tokenRepository.findByUserId(token.getUserId());
-            for (JwtToken tk : allTokens) {
-                tk.setRevoked(true);
-                tokenRepository.save(tk);
-            }
-
+        var authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (username != null && authentication != null && authentication.getPrincipal() instanceof JwtPrincipal principal) {
+            // username and authentication exists, so logout from every device:
+            tokenEpochs.bump(principal.id());
+            tokenRepository.deleteAllByUserId(principal.id());
         } else {
             throw new ForbiddenActionException(utils.getMessage("error_auditor_empty"));
         }
@@ -114,39 +185,53 @@ public class JwtTokenService {
 
     @PreAuthorize("hasAnyAuthority('ADMIN', 'SUPERVISOR')")
     public void revokeAllUserTokensByUserId(Long userId) {
-        var tokenList = tokenRepository.findByUserId(userId);
-        if (tokenList.isEmpty()) {
-            throw new IdNotFoundException(utils.getMessage("exception_id_not_found_token_user", new Long[]{userId}));
-        } else {
-            try {
-                tokenList.forEach(t -> tokenRepository.deleteById(t.getId()));
-            } catch (IllegalArgumentException e) {
-                throw new RepositoryException(utils.getMessage("exception_repository_save_error_token_revoke"));
+        try {
+            if (!tokenEpochs.bump(userId)) {
+                throw new IdNotFoundException(utils.getMessage("exception_id_not_found_token_user", new Long[]{userId}));
             }
+            tokenRepository.deleteAllByUserId(userId);
+        } catch (DataAccessException e) {
+            log.warn("Could not revoke the tokens of user {}: {}", userId, e.getMessage());
+            throw new RepositoryException(utils.getMessage("exception_repository_save_error_token_revoke"));
         }
     }
 
-    // Expire tokens every 5 hours so no token exists with more than 10 hours
+    // Expire refresh tokens every 5 hours so no token exists with more than 10 hours
     @Scheduled(fixedDelay = EXPIRATION_TIME / 2) //TODO: test scheduled methods
     public void scheduledTokenExpirationTask() {
         var tenHoursAgo = LocalDateTime.now().minusHours(10);
-        var expiredTokens = tokenRepository.findByCreatedDateBefore(tenHoursAgo);
-        for (JwtToken token : expiredTokens) {
-            token.setExpired(true);
-            tokenRepository.save(token);
-        }
+        int expired = inBatches(batchSize -> tokenRepository.expireCreatedBefore(tenHoursAgo, batchSize));
+        log.info("Expired {} refresh tokens", expired);
     }
 
-    // Delete tokens from database after 2 days
+    // Delete tokens from database after 2 days: whole partitions first, then what's left in the others
     @Scheduled(fixedDelay = EXPIRATION_TIME)
     public void scheduleTokenDeleteTask() {
         var twoDaysAgo = LocalDateTime.now().minusHours(48);
-        var expiredTokens = tokenRepository.findByCreatedDateBefore(twoDaysAgo);
-        for (JwtToken token : expiredTokens) {
-            if (token.isExpired()) {
-                tokenRepository.deleteById(token.getId());
-            }
-        }
+        int droppedPartitions = partitions.dropBefore(twoDaysAgo);
+        int deleted = inBatches(batchSize -> tokenRepository.deleteExpiredCreatedBefore(twoDaysAgo, batchSize));
+        log.info("Dropped {} token partitions and deleted {} expired refresh tokens", droppedPartitions, deleted);
     }
 
+    /**
+     * Runs a bulk statement of at most {@link #LIFECYCLE_BATCH_SIZE} rows until it affects fewer rows than that.
+     *
+     * @return the total number of rows affected.
+     */
+    private static int inBatches(IntUnaryOperator statement) {
+        int total = 0;
+        int affected;
+        do {
+            affected = statement.applyAsInt(LIFECYCLE_BATCH_SIZE);
+            total += affected;
+        } while (affected == LIFECYCLE_BATCH_SIZE);
+        return total;
+    }
+
+    /**
+     * @param accessToken  short-lived JWT sent as bearer token.
+     * @param refreshToken opaque, single-use token exchanged for a new pair at <i>/api/v1/auth/refresh</i>.
+     */
+    public record TokenPair(String accessToken, String refreshToken) {
+    }
 }
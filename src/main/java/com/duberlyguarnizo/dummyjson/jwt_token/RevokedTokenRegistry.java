@@ -0,0 +1,155 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.duberlyguarnizo.dummyjson.jwt_token;
+
+import com.duberlyguarnizo.dummyjson.security.TokenDigests;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-memory view of the revoked tokens that have not expired yet, so the request filter doesn't query the token
+ * table on every request. A Bloom filter answers "not revoked" (the common case) without touching the exact set;
+ * its rare false positives are resolved by the exact set of token digests.
+ * <p>
+ * Only access tokens are registered here, by {@link JwtTokenService} on logout (and by
+ * {@link com.duberlyguarnizo.dummyjson.security.AuthEventListener} for logouts on other nodes). The node where the
+ * logout happens also stores the token in the <i>revoked_access_token</i> table, which is loaded at startup, so a
+ * logged-out access token stays rejected after a restart. Entries and rows are pruned once the token has expired,
+ * since the JWT expiration check rejects it anyway.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RevokedTokenRegistry {
+    private static final int BLOOM_BITS = 1 << 20; //128 KiB, ~1% false positives with 100k revoked tokens
+    private static final int BLOOM_HASHES = 7;
+
+    private final RevokedAccessTokenRepository repository;
+    private final Map<String, Instant> expirationByDigest = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+    private volatile BloomFilter bloomFilter = new BloomFilter();
+
+    @PostConstruct
+    void init() {
+        List<RevokedAccessToken> revoked = repository.findByExpiresAtAfter(Instant.now());
+        revoked.forEach(token -> revokeDigest(HexFormat.of().parseHex(token.getTokenDigest()), token.getExpiresAt()));
+        log.info("Loaded {} revoked access tokens", revoked.size());
+    }
+
+    public boolean isRevoked(String jwt) {
+        byte[] digest = TokenDigests.sha256(jwt);
+        return bloomFilter.mightContain(digest) && expirationByDigest.containsKey(TokenDigests.toHex(digest));
+    }
+
+    /**
+     * Revokes a token logged out on this node, and stores it so the revocation survives a restart.
+     *
+     * @param jwt       the access token.
+     * @param expiresAt its expiration, after which the entry is pruned.
+     */
+    public void revoke(String jwt, Instant expiresAt) {
+        byte[] digest = TokenDigests.sha256(jwt);
+        revokeDigest(digest, expiresAt);
+        repository.save(new RevokedAccessToken(TokenDigests.toHex(digest), expiresAt));
+    }
+
+    /**
+     * Same as {@link #revoke(String, Instant)}, for tokens revoked on another node, which only publishes the digest.
+     */
+    public void revokeDigest(byte[] digest, Instant expiresAt) {
+        synchronized (writeLock) {
+            // the exact set first: a reader that sees the Bloom bits must also find the entry
+            expirationByDigest.put(TokenDigests.toHex(digest), expiresAt);
+            bloomFilter.put(digest);
+        }
+    }
+
+    public int size() {
+        return expirationByDigest.size();
+    }
+
+    /**
+     * Drops expired tokens and rebuilds the Bloom filter from the remaining ones, since bits can't be removed from it.
+     * Expired rows are deleted from the table too.
+     */
+    @Scheduled(fixedDelay = 1000 * 60) //every minute
+    public void prune() {
+        Instant now = Instant.now();
+        try {
+            repository.deleteByExpiresAtBefore(now);
+        } catch (DataAccessException e) {
+            log.warn("Could not delete the expired revoked access tokens: {}", e.getMessage());
+        }
+        synchronized (writeLock) {
+            if (!expirationByDigest.values().removeIf(expiration -> expiration.isBefore(now))) {
+                return;
+            }
+            var rebuilt = new BloomFilter();
+            expirationByDigest.keySet().forEach(digest -> rebuilt.put(HexFormat.of().parseHex(digest)));
+            bloomFilter = rebuilt;
+        }
+    }
+
+    /**
+     * Bloom filter over SHA-256 digests: they are already uniformly distributed, so the probe positions are derived
+     * from their first 16 bytes (double hashing) instead of hashing again.
+     */
+    private static final class BloomFilter {
+        private final AtomicLongArray bits = new AtomicLongArray(BLOOM_BITS / Long.SIZE);
+
+        void put(byte[] digest) {
+            ByteBuffer buffer = ByteBuffer.wrap(digest);
+            long h1 = buffer.getLong(0);
+            long h2 = buffer.getLong(8);
+            for (int i = 0; i < BLOOM_HASHES; i++) {
+                int bit = index(h1 + i * h2);
+                bits.getAndUpdate(bit / Long.SIZE, word -> word | (1L << (bit % Long.SIZE)));
+            }
+        }
+
+        boolean mightContain(byte[] digest) {
+            ByteBuffer buffer = ByteBuffer.wrap(digest);
+            long h1 = buffer.getLong(0);
+            long h2 = buffer.getLong(8);
+            for (int i = 0; i < BLOOM_HASHES; i++) {
+                int bit = index(h1 + i * h2);
+                if ((bits.get(bit / Long.SIZE) & (1L << (bit % Long.SIZE))) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int index(long hash) {
+            return (int) ((hash & Long.MAX_VALUE) % BLOOM_BITS);
+        }
+    }
+}
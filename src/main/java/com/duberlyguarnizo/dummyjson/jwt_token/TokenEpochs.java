@@ -0,0 +1,113 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.duberlyguarnizo.dummyjson.jwt_token;
+
+import com.duberlyguarnizo.dummyjson.appuser.AppUserRepository;
+import com.duberlyguarnizo.dummyjson.security.AuthEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cached token generation counter of each user. A JWT is only accepted while the epoch it was issued with is the
+ * current one, so {@link #bump(Long)} revokes every token of a user with a single UPDATE, whatever their number.
+ * <p>
+ * Epochs only grow, so concurrent loads and bumps are merged with {@code max}: a stale read can never replace a
+ * newer value. Bumps are published to the other nodes through {@link AuthEventPublisher}; without it, the cache is
+ * dropped every 30 seconds so bumps made elsewhere are eventually seen.
+ */
+@Component
+public class TokenEpochs {
+    private final AppUserRepository userRepository;
+    private final AuthEventPublisher events;
+    private final Map<Long, Integer> epochByUserId = new ConcurrentHashMap<>();
+
+    public TokenEpochs(AppUserRepository userRepository, AuthEventPublisher events) {
+        this.userRepository = userRepository;
+        this.events = events;
+    }
+
+    /**
+     * @return the current epoch of the user, or -1 if the user doesn't exist (no token is current then).
+     */
+    public int current(Long userId) {
+        Integer epoch = epochByUserId.get(userId);
+        if (epoch == null) {
+            var stored = userRepository.findTokenEpochById(userId);
+            if (stored.isEmpty()) {
+                return -1;
+            }
+            epoch = epochByUserId.merge(userId, stored.get(), Math::max);
+        }
+        return epoch;
+    }
+
+    public boolean isCurrent(Long userId, int tokenEpoch) {
+        return tokenEpoch == current(userId);
+    }
+
+    /**
+     * Invalidates all the tokens issued to the user so far. Inside a transaction, the new epoch is cached and
+     * published once it commits: since cached epochs never go down, caching an epoch that is then rolled back would
+     * reject every token issued with the stored one until the node restarts.
+     *
+     * @return false if the user doesn't exist.
+     */
+    public boolean bump(Long userId) {
+        if (userRepository.incrementTokenEpoch(userId) == 0) {
+            return false;
+        }
+        userRepository.findTokenEpochById(userId).ifPresent(epoch -> {
+            events.epochChanged(userId, epoch); //sent after commit by the publisher
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        epochByUserId.merge(userId, epoch, Math::max);
+                    }
+                });
+            } else {
+                epochByUserId.merge(userId, epoch, Math::max);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Applies a bump made on another node. Users that aren't cached are skipped: they are loaded when needed.
+     */
+    public void advance(Long userId, int epoch) {
+        epochByUserId.computeIfPresent(userId, (id, cached) -> Math.max(cached, epoch));
+    }
+
+    public void clear() {
+        epochByUserId.clear();
+    }
+
+    @Scheduled(fixedDelay = 1000 * 30) //every 30 seconds
+    public void expire() {
+        if (!events.isEnabled()) {
+            clear();
+        }
+    }
+}
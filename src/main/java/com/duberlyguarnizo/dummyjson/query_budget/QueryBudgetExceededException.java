@@ -0,0 +1,41 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.duberlyguarnizo.dummyjson.query_budget;
+
+import lombok.Getter;
+
+/**
+ * Thrown by {@link QueryBudgetFilter} when <i>query-budget.enforce</i> is on and a request runs more SQL statements
+ * than the budget of its endpoint. It's thrown from the outermost filter, after the response has been handled, so no
+ * exception handler turns it into an HTTP error: it reaches the test that made the request.
+ */
+@Getter
+public class QueryBudgetExceededException extends RuntimeException {
+    private final String endpoint;
+    private final int statements;
+    private final int budget;
+
+    public QueryBudgetExceededException(String endpoint, int statements, int budget) {
+        super(String.format("%s ran %d SQL statements, over its budget of %d", endpoint, statements, budget));
+        this.endpoint = endpoint;
+        this.statements = statements;
+        this.budget = budget;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.duberlyguarnizo.dummyjson.query_budget;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/**
+ * Counts the SQL statements run by each request and compares them with the budget of its endpoint
+ * ({@link QueryBudget}, or <i>query-budget.default-max</i>). Requests over budget are logged; with
+ * <i>query-budget.enforce</i> (set by the controller tests) they fail with {@link QueryBudgetExceededException}
+ * instead, so a change that adds queries to an endpoint, like a full-table scan, breaks its tests.
+ * <p>
+ * It runs once per request, first in the security filter chain (see
+ * {@link com.duberlyguarnizo.dummyjson.security.CustomFilterChains}); its servlet filter registration is disabled in
+ * {@link QueryBudgetConfig}.
+ */
+@Component
+@Slf4j
+public class QueryBudgetFilter extends OncePerRequestFilter {
+    private final int defaultMax;
+    private final boolean enforce;
+
+    public QueryBudgetFilter(@Value("${query-budget.default-max}") int defaultMax,
+                             @Value("${query-budget.enforce}") boolean enforce) {
+        this.defaultMax = defaultMax;
+        this.enforce = enforce;
+    }
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request,
+                                    @NonNull HttpServletResponse response,
+                                    @NonNull FilterChain filterChain) throws ServletException, IOException {
+        SqlStatementCounter.start();
+        int statements;
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            statements = SqlStatementCounter.stop();
+        }
+        check(request, statements);
+    }
+
+    private void check(HttpServletRequest request, int statements) {
+        HandlerMethod handler = request.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE) instanceof HandlerMethod h
+                ? h : null;
+        int budget = budgetOf(handler);
+        log.debug("{} {} ran {} SQL statements (budget {})", request.getMethod(), request.getRequestURI(), statements, budget);
+        if (statements <= budget) {
+            return;
+        }
+        var exceeded = new QueryBudgetExceededException(endpointOf(request, handler), statements, budget);
+        if (enforce) {
+            throw exceeded;
+        }
+        log.warn(exceeded.getMessage());
+    }
+
+    private int budgetOf(HandlerMethod handler) {
+        QueryBudget budget = handler == null ? null : handler.getMethodAnnotation(QueryBudget.class);
+        return budget == null ? defaultMax : budget.value();
+    }
+
+    /**
+     * @return e.g. "POST /api/v1/authenticated/json (JCAuthenticatedController#createJsonContent)".
+     */
+    private static String endpointOf(HttpServletRequest request, HandlerMethod handler) {
+        String endpoint = request.getMethod() + " " + request.getRequestURI();
+        return handler == null ? endpoint
+                : endpoint + " (" + handler.getBeanType().getSimpleName() + "#" + handler.getMethod().getName() + ")";
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.duberlyguarnizo.dummyjson.security;
+
+import java.util.List;
+
+/**
+ * Change of authentication state made on one node, published to the others by {@link AuthEventPublisher}. Only the
+ * fields of its type are set; tokens travel as digests, never as usable credentials.
+ *
+ * @param origin    id of the node that made the change, which has already applied it.
+ * @param type      what changed.
+ * @param digest    TOKEN_REVOKED: hex SHA-256 of the revoked access token.
+ * @param expiresAt TOKEN_REVOKED: expiration of the token, in epoch milliseconds.
+ * @param userId    EPOCH_CHANGED: the user whose tokens were revoked.
+ * @param epoch     EPOCH_CHANGED: the user's new token epoch.
+ * @param usernames USER_CHANGED: the usernames to drop from the user cache.
+ */
+public record AuthEvent(String origin,
+                        Type type,
+                        String digest,
+                        Long expiresAt,
+                        Long userId,
+                        Integer epoch,
+                        List<String> usernames) {
+
+    public enum Type {
+        TOKEN_REVOKED, EPOCH_CHANGED, USER_CHANGED
+    }
+}
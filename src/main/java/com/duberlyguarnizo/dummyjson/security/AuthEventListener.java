@@ -0,0 +1,177 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.duberlyguarnizo.dummyjson.security;
+
+import com.duberlyguarnizo.dummyjson.appuser.AppUser;
+import com.duberlyguarnizo.dummyjson.jwt_token.RevokedTokenRegistry;
+import com.duberlyguarnizo.dummyjson.jwt_token.TokenEpochs;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+
+/**
+ * Holds a {@code LISTEN} connection on the channel of {@link AuthEventPublisher} and applies the events of the other
+ * nodes to the local state: revoked access tokens, token epochs and cached users (both the user details cache and
+ * the second-level cache regions of {@link AppUser}).
+ * <p>
+ * The connection is taken from the pool and kept for the life of the application. If it's lost, the listener
+ * reconnects and, since events may have been missed meanwhile, drops the cached epochs and users; revoked access
+ * tokens can't be recovered that way, but they expire within minutes.
+ */
+@Slf4j
+@Component
+public class AuthEventListener {
+    private static final Duration POLL_TIMEOUT = Duration.ofSeconds(5);
+    private static final Duration RECONNECT_DELAY = Duration.ofSeconds(5);
+
+    private final DataSource dataSource;
+    private final ObjectMapper objectMapper;
+    private final AuthEventPublisher publisher;
+    private final RevokedTokenRegistry revokedTokens;
+    private final TokenEpochs tokenEpochs;
+    private final CustomUserDetailService userDetailService;
+    private final Cache entityCache;
+    private volatile boolean running;
+    private Thread thread;
+
+    public AuthEventListener(DataSource dataSource,
+                             ObjectMapper objectMapper,
+                             AuthEventPublisher publisher,
+                             RevokedTokenRegistry revokedTokens,
+                             TokenEpochs tokenEpochs,
+                             CustomUserDetailService userDetailService,
+                             EntityManagerFactory entityManagerFactory) {
+        this.dataSource = dataSource;
+        this.objectMapper = objectMapper;
+        this.publisher = publisher;
+        this.revokedTokens = revokedTokens;
+        this.tokenEpochs = tokenEpochs;
+        this.userDetailService = userDetailService;
+        this.entityCache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+    }
+
+    @PostConstruct
+    void start() {
+        if (!publisher.isEnabled()) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::listen, "auth-events");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            thread.join(POLL_TIMEOUT.toMillis());
+        }
+    }
+
+    private void listen() {
+        boolean reconnecting = false;
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("listen " + AuthEventPublisher.CHANNEL);
+                }
+                if (reconnecting) { //after LISTEN, so what changes from now on arrives as events
+                    tokenEpochs.clear();
+                    userDetailService.evictAll();
+                    evictUserRegions();
+                    log.info("Listening to authentication events again, cached epochs and users were dropped");
+                }
+                reconnecting = true;
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications((int) POLL_TIMEOUT.toMillis());
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            apply(notification.getParameter());
+                        }
+                    }
+                }
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("unlisten *"); //the connection goes back to the pool
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Authentication events connection lost, reconnecting in {}: {}", RECONNECT_DELAY, e.getMessage());
+                try {
+                    Thread.sleep(RECONNECT_DELAY.toMillis());
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    void apply(String payload) {
+        AuthEvent event;
+        try {
+            event = objectMapper.readValue(payload, AuthEvent.class);
+        } catch (JsonProcessingException e) {
+            log.warn("Ignoring malformed authentication event: {}", e.getMessage());
+            return;
+        }
+        if (publisher.nodeId().equals(event.origin())) {
+            return; //applied when it was published
+        }
+        switch (event.type()) {
+            case TOKEN_REVOKED ->
+                    revokedTokens.revokeDigest(HexFormat.of().parseHex(event.digest()), Instant.ofEpochMilli(event.expiresAt()));
+            case EPOCH_CHANGED -> tokenEpochs.advance(event.userId(), event.epoch());
+            case USER_CHANGED -> {
+                userDetailService.evict(event.usernames().toArray(String[]::new));
+                evictUserRegions();
+            }
+        }
+    }
+
+    /**
+     * The second-level cache is keyed by id and the events carry usernames, so the whole region is dropped; users
+     * change rarely enough for that to be cheap.
+     */
+    private void evictUserRegions() {
+        entityCache.evictEntityData(AppUser.class);
+        entityCache.evictNaturalIdData(AppUser.class);
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.duberlyguarnizo.dummyjson.security;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Publishes the authentication changes made on this node (logouts, token epoch bumps, user changes) with PostgreSQL
+ * {@code NOTIFY}, so {@link AuthEventListener} on every other node applies them to its in-memory state right away.
+ * <p>
+ * Inside a transaction the notification is sent after it commits, so other nodes never reload the state before it's
+ * visible, and on a connection of its own, so a failed {@code NOTIFY} (e.g. a payload over 8000 bytes) can't abort the
+ * caller's transaction. On other databases (like the H2 one of the load test), or with {@code auth.events.enabled=false}, it does
+ * nothing and each node relies on its caches expiring.
+ */
+@Slf4j
+@Component
+public class AuthEventPublisher {
+    static final String CHANNEL = "auth_events";
+    private final DataSource dataSource;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    public AuthEventPublisher(ObjectMapper objectMapper,
+                              DataSource dataSource,
+                              @Value("${auth.events.enabled:true}") boolean enabled) {
+        this.dataSource = dataSource;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled && isPostgres(dataSource);
+        log.info("Authentication events are {}", this.enabled ? "published on channel " + CHANNEL : "disabled");
+    }
+
+    private static boolean isPostgres(DataSource dataSource) {
+        try {
+            return "PostgreSQL".equals(JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName));
+        } catch (MetaDataAccessException e) {
+            return false;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    String nodeId() {
+        return nodeId;
+    }
+
+    public void tokenRevoked(String jwt, Instant expiresAt) {
+        publish(new AuthEvent(nodeId, AuthEvent.Type.TOKEN_REVOKED, TokenDigests.sha256Hex(jwt),
+                expiresAt.toEpochMilli(), null, null, null));
+    }
+
+    public void epochChanged(Long userId, int epoch) {
+        publish(new AuthEvent(nodeId, AuthEvent.Type.EPOCH_CHANGED, null, null, userId, epoch, null));
+    }
+
+    public void userChanged(String... usernames) {
+        publish(new AuthEvent(nodeId, AuthEvent.Type.USER_CHANGED, null, null, null, null,
+                Arrays.stream(usernames).filter(Objects::nonNull).distinct().toList()));
+    }
+
+    private void publish(AuthEvent event) {
+        if (!enabled) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    send(event);
+                }
+            });
+        } else {
+            send(event);
+        }
+    }
+
+    /**
+     * Sends the notification on a new connection taken straight from the pool (not the one bound to the transaction,
+     * if any), in auto-commit mode.
+     */
+    private void send(AuthEvent event) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("select pg_notify(?, ?)")) {
+            statement.setString(1, CHANNEL);
+            statement.setString(2, objectMapper.writeValueAsString(event));
+            statement.execute();
+        } catch (JsonProcessingException | SQLException e) {
+            // the change itself has been committed; other nodes pick it up when their caches expire
+            log.warn("Could not publish the authentication event {}: {}", event.type(), e.getMessage());
+        }
+    }
+}
@@ -19,6 +19,8 @@
 package com.duberlyguarnizo.dummyjson.security;
 
 import com.duberlyguarnizo.dummyjson.appuser.AppUserRole;
+import com.duberlyguarnizo.dummyjson.query_budget.QueryBudgetFilter;
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.security.config.Customizer;
@@ -28,6 +30,7 @@ import org.springframework.security.config.annotation.web.configurers.AbstractHt
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.context.SecurityContextHolderFilter;
 import org.springframework.stereotype.Component;
 
 @RequiredArgsConstructor
@@ -35,6 +38,7 @@ import org.springframework.stereotype.Component;
 @EnableWebSecurity
 public class CustomFilterChains {
     private final JwtRequestFilter jwtRequestFilter;
+    private final QueryBudgetFilter queryBudgetFilter;
 
     @Bean
     SecurityFilterChain apiFilterChain(HttpSecurity http) throws Exception {
@@ -44,6 +48,9 @@ public class CustomFilterChains {
         http.formLogin(AbstractHttpConfigurer::disable);
         http.httpBasic(AbstractHttpConfigurer::disable);
         http.authorizeHttpRequests(auth -> auth
+                //the request of a streamed response (imports) was already authorized, its async dispatch has no JWT context
+                .dispatcherTypeMatchers(DispatcherType.ASYNC)
+                .permitAll()
                 .requestMatchers(
                         "/api/v1/public/**",
                         "/api/v1/test/**",
@@ -55,15 +62,20 @@ public class CustomFilterChains {
                         "/swagger-resources",
                         "/swagger-resources/**",
                         "/configuration/**",
-                        "/webjars/**")
+                        "/webjars/**",
+                        "/actuator/health")
                 .permitAll()
                 .requestMatchers("/api/v1/authenticated/**")
                 .authenticated()
                 .requestMatchers("/api/v1/management/**")
                 .hasAnyAuthority(AppUserRole.ADMIN.name(), AppUserRole.SUPERVISOR.name())
+                .requestMatchers("/actuator/**")
+                .hasAuthority(AppUserRole.ADMIN.name())
                 .anyRequest()
                 .authenticated());
         http.sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS));
+        //first in the chain so it counts every statement of the request; its servlet filter registration is disabled
+        http.addFilterBefore(queryBudgetFilter, SecurityContextHolderFilter.class);
         http.addFilterBefore(jwtRequestFilter, UsernamePasswordAuthenticationFilter.class);
 
         return http.build();
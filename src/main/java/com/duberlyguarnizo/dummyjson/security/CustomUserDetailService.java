@@ -18,6 +18,7 @@
 
 package com.duberlyguarnizo.dummyjson.security;
 
+import com.duberlyguarnizo.dummyjson.appuser.AppUser;
 import com.duberlyguarnizo.dummyjson.appuser.AppUserRepository;
 import com.duberlyguarnizo.dummyjson.util.ControllerUtils;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -25,10 +26,24 @@ import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Loads users by username, for login and for every request authenticated with a JWT. Loaded users are cached for
+ * {@link #CACHE_TTL} (usernames are case-insensitive, so are the cache keys); {@code AppUserService} evicts a user
+ * as soon as it's updated, deactivated or deleted, and the TTL bounds how stale a user changed elsewhere can be.
+ */
 @Service
 public class CustomUserDetailService implements UserDetailsService {
+    static final Duration CACHE_TTL = Duration.ofSeconds(30);
+    static final int CACHE_MAX_ENTRIES = 10_000;
     private final AppUserRepository appUserRepository;
     private final ControllerUtils utils;
+    private final Map<String, CachedUser> cache = new ConcurrentHashMap<>();
 
     public CustomUserDetailService(AppUserRepository appUserRepository, ControllerUtils utils) {
         this.appUserRepository = appUserRepository;
@@ -37,11 +52,55 @@ public class CustomUserDetailService implements UserDetailsService {
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        var possibleAppUser = appUserRepository.findByUsernameIgnoreCase(username); //name must be unique!
+        String key = cacheKey(username);
+        long now = System.nanoTime();
+        CachedUser cached = cache.get(key);
+        if (cached != null && now - cached.loadedAt < CACHE_TTL.toNanos()) {
+            return cached.user;
+        }
+        //exact usernames come from the natural-id cache; other casings need the case-insensitive query
+        var possibleAppUser = appUserRepository.findByNaturalUsername(username)
+                .map(List::of)
+                .orElseGet(() -> appUserRepository.findByUsernameIgnoreCase(username)); //name must be unique!
         if (possibleAppUser.isEmpty()) {
+            cache.remove(key);
             throw new UsernameNotFoundException(utils.getMessage("exception_username_not_found", new String[]{username}));
         } else {
-            return possibleAppUser.get(0);
+            AppUser appUser = possibleAppUser.get(0);
+            if (cache.size() >= CACHE_MAX_ENTRIES) {
+                cache.values().removeIf(c -> now - c.loadedAt >= CACHE_TTL.toNanos());
+            }
+            if (cache.size() < CACHE_MAX_ENTRIES) {
+                cache.put(key, new CachedUser(appUser, now));
+            }
+            return appUser;
+        }
+    }
+
+    /**
+     * Drops the cached users, so the next request or login reads them from the database.
+     *
+     * @param usernames the usernames to evict; null values are ignored.
+     */
+    public void evict(String... usernames) {
+        for (String username : usernames) {
+            if (username != null) {
+                cache.remove(cacheKey(username));
+            }
         }
     }
+
+    /**
+     * Drops every cached user, when changes made elsewhere may have been missed.
+     */
+    public void evictAll() {
+        cache.clear();
+    }
+
+    private static String cacheKey(String username) {
+        return username.toLowerCase(Locale.ROOT);
+    }
+
+    private record CachedUser(AppUser user, long loadedAt) {
+    }
 }
@@ -0,0 +1,100 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.duberlyguarnizo.dummyjson.security;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.*;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.*;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Conversions between P-256 keys and their JSON Web Key representation (RFC 7517, RFC 7518 section 6.2).
+ */
+final class EcJwks {
+    static final String CURVE = "P-256";
+    private static final int COORDINATE_BYTES = 32;
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private EcJwks() {
+    }
+
+    static KeyPair generateKeyPair() throws GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        return generator.generateKeyPair();
+    }
+
+    static Map<String, Object> toJwk(String kid, ECPublicKey key) {
+        Map<String, Object> jwk = new LinkedHashMap<>();
+        jwk.put("kty", "EC");
+        jwk.put("crv", CURVE);
+        jwk.put("x", coordinate(key.getW().getAffineX()));
+        jwk.put("y", coordinate(key.getW().getAffineY()));
+        jwk.put("use", "sig");
+        jwk.put("alg", "ES256");
+        jwk.put("kid", kid);
+        return jwk;
+    }
+
+    static ECPublicKey fromJwk(Map<String, ?> jwk) throws GeneralSecurityException {
+        if (!"EC".equals(jwk.get("kty")) || !CURVE.equals(jwk.get("crv"))) {
+            throw new InvalidKeySpecException("Only EC P-256 keys are supported, got " + jwk.get("kty") + "/" + jwk.get("crv"));
+        }
+        ECPoint point = new ECPoint(new BigInteger(1, DECODER.decode((String) jwk.get("x"))),
+                new BigInteger(1, DECODER.decode((String) jwk.get("y"))));
+        AlgorithmParameters parameters = AlgorithmParameters.getInstance("EC");
+        parameters.init(new ECGenParameterSpec("secp256r1"));
+        ECParameterSpec curve = parameters.getParameterSpec(ECParameterSpec.class);
+        return (ECPublicKey) KeyFactory.getInstance("EC").generatePublic(new ECPublicKeySpec(point, curve));
+    }
+
+    /**
+     * @return the RFC 7638 thumbprint of the key, used as its key id.
+     */
+    static String thumbprint(ECPublicKey key) {
+        String canonical = "{\"crv\":\"" + CURVE + "\",\"kty\":\"EC\",\"x\":\"" + coordinate(key.getW().getAffineX())
+                           + "\",\"y\":\"" + coordinate(key.getW().getAffineY()) + "\"}";
+        try {
+            return ENCODER.encodeToString(MessageDigest.getInstance("SHA-256").digest(canonical.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e); //mandatory in every JVM
+        }
+    }
+
+    private static String coordinate(BigInteger value) {
+        byte[] bytes = value.toByteArray(); //big-endian, may have a sign byte or be shorter than the field size
+        byte[] fixed = new byte[COORDINATE_BYTES];
+        int length = Math.min(bytes.length, COORDINATE_BYTES);
+        System.arraycopy(bytes, bytes.length - length, fixed, COORDINATE_BYTES - length, length);
+        return ENCODER.encodeToString(fixed);
+    }
+
+    static PublicKey decodePublicKey(String base64) throws GeneralSecurityException {
+        return KeyFactory.getInstance("EC").generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(base64)));
+    }
+
+    static String encode(Key key) {
+        return Base64.getEncoder().encodeToString(key.getEncoded());
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.duberlyguarnizo.dummyjson.security;
+
+import com.duberlyguarnizo.dummyjson.jwt_token.JwtSigningKey;
+import com.duberlyguarnizo.dummyjson.jwt_token.JwtSigningKeyRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.interfaces.ECPublicKey;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The ES256 keys used to sign and verify JWTs, identified by key id ("kid").
+ * <p>
+ * Signing nodes ({@code jwt.signing.enabled=true}, the default) keep the key pairs in the jwt_signing_key table:
+ * the newest one signs, a new one is generated every {@code jwt.signing.rotation-period}, and older ones keep
+ * verifying until every token they signed has expired. Private keys are stored encrypted with the key-encryption key
+ * {@code jwt.signing.kek} (see {@link SigningKeyCipher}), which signing nodes must share. Verification-only nodes set
+ * {@code jwt.signing.enabled=false} and {@code jwt.jwks-uri} to the JWKS endpoint of a signing node, so they only ever
+ * hold public keys and need no KEK.
+ * <p>
+ * Public keys are cached by kid; an unknown kid reloads the keys (at most every {@link #RELOAD_INTERVAL}, so
+ * tokens with made-up key ids can't hammer the database or the JWKS endpoint).
+ */
+@Slf4j
+@Component
+public class JwtKeyRing {
+    private static final Duration RELOAD_INTERVAL = Duration.ofSeconds(30);
+
+    private final JwtSigningKeyRepository repository;
+    private final ObjectMapper objectMapper;
+    private final boolean signingEnabled;
+    private final Duration rotationPeriod;
+    private final URI jwksUri;
+    private final SigningKeyCipher cipher;
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final Map<String, PublicKey> publicKeys = new ConcurrentHashMap<>();
+    private volatile SigningKey signingKey;
+    private volatile long lastReloadNanos;
+
+    public JwtKeyRing(JwtSigningKeyRepository repository,
+                      ObjectMapper objectMapper,
+                      @Value("${jwt.signing.enabled:true}") boolean signingEnabled,
+                      @Value("${jwt.signing.rotation-period:P1D}") Duration rotationPeriod,
+                      @Value("${jwt.jwks-uri:}") String jwksUri,
+                      @Value("${jwt.signing.kek:}") String kek) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.signingEnabled = signingEnabled;
+        this.rotationPeriod = rotationPeriod;
+        this.jwksUri = jwksUri.isBlank() ? null : URI.create(jwksUri);
+        this.cipher = signingEnabled ? new SigningKeyCipher(kek) : null;
+    }
+
+    @PostConstruct
+    void init() {
+        rotate();
+    }
+
+    /**
+     * @throws IllegalStateException on verification-only nodes.
+     */
+    public SigningKey signingKey() {
+        SigningKey current = signingKey;
+        if (current == null) {
+            throw new IllegalStateException("This node does not sign tokens (jwt.signing.enabled=false)");
+        }
+        return current;
+    }
+
+    /**
+     * @return the public key with the given id, or null if it's unknown (or was retired).
+     */
+    public PublicKey publicKey(String kid) {
+        PublicKey key = publicKeys.get(kid);
+        if (key == null && System.nanoTime() - lastReloadNanos > RELOAD_INTERVAL.toNanos()) {
+            reload();
+            key = publicKeys.get(kid);
+        }
+        return key;
+    }
+
+    /**
+     * @return the public keys that can verify tokens still in circulation, as a JWK set.
+     */
+    public Map<String, Object> jwks() {
+        List<Map<String, Object>> keys = new ArrayList<>();
+        publicKeys.forEach((kid, key) -> keys.add(EcJwks.toJwk(kid, (ECPublicKey) key)));
+        return Map.of("keys", keys);
+    }
+
+    /**
+     * Reloads the keys, so keys created by other nodes are picked up, and creates a new signing key when the newest
+     * one is older than the rotation period.
+     */
+    @Scheduled(fixedDelay = 1000 * 60, initialDelay = 1000 * 60) //every minute
+    public synchronized void rotate() {
+        reload();
+        if (signingEnabled && (signingKey == null || signingKey.createdDate().isBefore(LocalDateTime.now().minus(rotationPeriod)))) {
+            try {
+                KeyPair keyPair = EcJwks.generateKeyPair();
+                String kid = EcJwks.thumbprint((ECPublicKey) keyPair.getPublic());
+                LocalDateTime now = LocalDateTime.now();
+                repository.save(JwtSigningKey.builder()
+                        .kid(kid)
+                        .publicKey(EcJwks.encode(keyPair.getPublic()))
+                        .encryptedPrivateKey(cipher.encrypt(kid, keyPair.getPrivate()))
+                        .createdDate(now)
+                        .build());
+                publicKeys.put(kid, keyPair.getPublic());
+                signingKey = new SigningKey(kid, keyPair.getPrivate(), now);
+                log.info("Created JWT signing key {}", kid);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Could not create a JWT signing key", e);
+            }
+        }
+    }
+
+    private synchronized void reload() {
+        lastReloadNanos = System.nanoTime();
+        try {
+            Map<String, PublicKey> loaded = jwksUri == null ? loadFromDatabase() : loadFromJwks();
+            publicKeys.keySet().retainAll(loaded.keySet()); //retired keys
+            publicKeys.putAll(loaded);
+        } catch (IOException | GeneralSecurityException | DataAccessException e) {
+            log.warn("Could not reload the JWT verification keys, keeping the cached ones: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Map<String, PublicKey> loadFromDatabase() throws GeneralSecurityException {
+        // a key signs tokens for (at most) a rotation period, and the last of them are valid for a token lifetime
+        LocalDateTime oldestInUse = LocalDateTime.now().minus(rotationPeriod).minus(JwtUtil.ACCESS_TOKEN_LIFETIME);
+        if (signingEnabled) {
+            repository.deleteByCreatedDateBefore(oldestInUse);
+        }
+        Map<String, PublicKey> loaded = new HashMap<>();
+        for (JwtSigningKey key : repository.findByCreatedDateAfterOrderByCreatedDateDesc(oldestInUse)) {
+            loaded.put(key.getKid(), EcJwks.decodePublicKey(key.getPublicKey()));
+            boolean newest = loaded.size() == 1;
+            if (newest && signingEnabled && key.getEncryptedPrivateKey() != null
+                && (signingKey == null || !signingKey.kid().equals(key.getKid()))) {
+                signingKey = new SigningKey(key.getKid(), decrypt(key), key.getCreatedDate());
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * @throws IllegalStateException if the key can't be decrypted, which means this node's KEK differs from the one
+     *                               of the node that created the key: signing with a key of its own would make the
+     *                               nodes overwrite each other's keys.
+     */
+    private PrivateKey decrypt(JwtSigningKey key) {
+        try {
+            return cipher.decrypt(key.getKid(), key.getEncryptedPrivateKey());
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new IllegalStateException("Could not decrypt JWT signing key " + key.getKid()
+                                            + ", check that jwt.signing.kek (JWT_KEK) is the same on every signing node", e);
+        }
+    }
+
+    private Map<String, PublicKey> loadFromJwks() throws IOException, InterruptedException, GeneralSecurityException {
+        HttpResponse<String> response = httpClient.send(HttpRequest.newBuilder(jwksUri).timeout(Duration.ofSeconds(5)).build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IOException("JWKS endpoint " + jwksUri + " answered " + response.statusCode());
+        }
+        Map<String, List<Map<String, Object>>> jwks = objectMapper.readValue(response.body(), new TypeReference<>() {
+        });
+        Map<String, PublicKey> loaded = new HashMap<>();
+        for (Map<String, Object> jwk : jwks.getOrDefault("keys", List.of())) {
+            loaded.put((String) jwk.get("kid"), EcJwks.fromJwk(jwk));
+        }
+        return loaded;
+    }
+
+    public record SigningKey(String kid, PrivateKey privateKey, LocalDateTime createdDate) {
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.duberlyguarnizo.dummyjson.security;
+
+import com.duberlyguarnizo.dummyjson.appuser.AppUser;
+import com.duberlyguarnizo.dummyjson.appuser.AppUserRole;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.security.Principal;
+import java.util.List;
+
+/**
+ * Principal of a request authenticated with a JWT, built from the verified token claims. It's immutable and holds
+ * no password hash or managed entity, and it's enough for auditing and {@code @PreAuthorize} checks without
+ * querying the database.
+ *
+ * @param id       the AppUser id.
+ * @param username the AppUser username (the token subject).
+ * @param role     the AppUser role when the token was issued; role changes revoke the user's tokens.
+ */
+public record JwtPrincipal(Long id, String username, AppUserRole role) implements Principal {
+
+    public static JwtPrincipal of(AppUser appUser) {
+        return new JwtPrincipal(appUser.getId(), appUser.getUsername(), appUser.getRole());
+    }
+
+    public List<GrantedAuthority> getAuthorities() {
+        return List.of(new SimpleGrantedAuthority(role.name()));
+    }
+
+    @Override
+    public String getName() {
+        return username;
+    }
+}
@@ -19,7 +19,9 @@
 package com.duberlyguarnizo.dummyjson.security;
 
 import com.duberlyguarnizo.dummyjson.appuser.AppUser;
-import com.duberlyguarnizo.dummyjson.jwt_token.JwtTokenRepository;
+import com.duberlyguarnizo.dummyjson.jwt_token.RevokedTokenRegistry;
+import com.duberlyguarnizo.dummyjson.jwt_token.TokenEpochs;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -38,7 +40,8 @@ import java.io.IOException;
 public class JwtRequestFilter extends OncePerRequestFilter {
     private final CustomUserDetailService userDetailService;
     private final JwtUtil jwtUtil;
-    private final JwtTokenRepository tokenRepository;
+    private final RevokedTokenRegistry revokedTokens;
+    private final TokenEpochs tokenEpochs;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request,
@@ -47,34 +50,49 @@ public class JwtRequestFilter extends OncePerRequestFilter {
         String authorizationHeader = request.getHeader("authorization");
         String username = null;
         String jwt = null;
+        Claims claims = null;
 
         if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
             jwt = authorizationHeader.substring(7);
-            username = jwtUtil.extractUsername(jwt);
+            claims = jwtUtil.extractAllClaims(jwt); //verified once, then served from cache until it expires
+            username = claims.getSubject();
         }
         if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            AppUser appUser = (AppUser) userDetailService.loadUserByUsername(username);
-            if (jwtUtil.validateToken(jwt, appUser)) {
-                var token = tokenRepository.findByToken(jwt).orElse(null); //jwt has been validated already
-                if (token != null && !request.getServletPath().contains("invalid-jwt")) {
-                    if (token.isExpired() || token.isRevoked()) {
-                        //No ProblemDetail is triggered at this point,
-                        // so redirect to a known endpoint that throws JwtValidationException.
-                        // Duberly Guarnizo, 2023.
-                        response.sendRedirect("/api/v1/auth/invalid-jwt");
-                    }
-
-                    UsernamePasswordAuthenticationToken upAuthenticationToken =
-                            new UsernamePasswordAuthenticationToken(
-                                    appUser,
-                                    null,
-                                    appUser.getAuthorities()
-                            );
-                    upAuthenticationToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                    SecurityContextHolder.getContext().setAuthentication(upAuthenticationToken);
+            JwtPrincipal principal = principal(claims, username);
+            //jwt signature and expiration have been validated already, only revocation is left
+            if (principal != null && !request.getServletPath().contains("invalid-jwt")) {
+                if (revokedTokens.isRevoked(jwt)
+                    || !tokenEpochs.isCurrent(principal.id(), jwtUtil.extractTokenEpoch(claims))) {
+                    //No ProblemDetail is triggered at this point,
+                    // so redirect to a known endpoint that throws JwtValidationException.
+                    // Duberly Guarnizo, 2023.
+                    response.sendRedirect("/api/v1/auth/invalid-jwt");
+                    return;
                 }
+
+                UsernamePasswordAuthenticationToken upAuthenticationToken =
+                        new UsernamePasswordAuthenticationToken(
+                                principal,
+                                null,
+                                principal.getAuthorities()
+                        );
+                upAuthenticationToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                SecurityContextHolder.getContext().setAuthentication(upAuthenticationToken);
             }
         }
         filterChain.doFilter(request, response);
     }
+
+    /**
+     * Builds the principal from the token claims. Tokens issued before the user id and role were part of the claims
+     * still need the user to be loaded.
+     */
+    private JwtPrincipal principal(Claims claims, String username) {
+        JwtPrincipal principal = jwtUtil.extractPrincipal(claims);
+        if (principal != null) {
+            return principal;
+        }
+        AppUser appUser = (AppUser) userDetailService.loadUserByUsername(username);
+        return jwtUtil.validateToken(claims, appUser) ? JwtPrincipal.of(appUser) : null;
+    }
 }
@@ -18,13 +18,18 @@
 
 package com.duberlyguarnizo.dummyjson.security;
 
-import io.jsonwebtoken.Claims;
-import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
+import com.duberlyguarnizo.dummyjson.appuser.AppUser;
+import com.duberlyguarnizo.dummyjson.appuser.AppUserRole;
+import io.jsonwebtoken.*;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.SignatureException;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
+import javax.crypto.spec.SecretKeySpec;
+import java.security.Key;
+import java.time.Duration;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
@@ -32,9 +37,60 @@ import java.util.function.Function;
 
 @Service
 public class JwtUtil {
-    private static final int EXPIRATION_TIME = 1000 * 60 * 60 * 10; //Token expires in 10 hours
-    @Value("${jwt_key}")
-    private String JWT_KEY;
+    /**
+     * Access tokens are stateless and short-lived: they are never looked up in the database, and a client keeps its
+     * session going by exchanging its refresh token (see {@link com.duberlyguarnizo.dummyjson.jwt_token.JwtTokenService}).
+     */
+    public static final Duration ACCESS_TOKEN_LIFETIME = Duration.ofMinutes(5);
+    private static final String EPOCH_CLAIM = "epoch";
+    private static final String SESSION_ID_CLAIM = "sid";
+    private static final String USER_ID_CLAIM = "uid";
+    private static final String ROLE_CLAIM = "role";
+    private final Key legacyKey;
+    private final JwtKeyRing keyRing;
+    private final JwtParser parser;
+    private final VerifiedTokenCache verifiedTokens;
+
+    /**
+     * @param jwtKey the base64 HS256 key that signed tokens before ES256 (see {@link JwtKeyRing}). Tokens signed with
+     *               it are accepted until they expire; once they have, it can be left empty.
+     */
+    public JwtUtil(@Value("${jwt_key:}") String jwtKey, VerifiedTokenCache verifiedTokens, JwtKeyRing keyRing) {
+        this.legacyKey = jwtKey.isBlank() ? null
+                : new SecretKeySpec(Decoders.BASE64.decode(jwtKey), SignatureAlgorithm.HS256.getJcaName());
+        this.keyRing = keyRing;
+        this.parser = Jwts.parserBuilder() //immutable and thread-safe
+                .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+                    @Override
+                    public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                        return verificationKey(header);
+                    }
+                })
+                .build();
+        this.verifiedTokens = verifiedTokens;
+    }
+
+    /**
+     * Picks the verification key from the token header. The algorithm is pinned per key type, so a token can't
+     * make us verify, for instance, an HMAC with a public key.
+     */
+    private Key verificationKey(JwsHeader<?> header) {
+        String kid = header.getKeyId();
+        if (kid != null) {
+            if (!SignatureAlgorithm.ES256.getValue().equals(header.getAlgorithm())) {
+                throw new UnsupportedJwtException("Tokens with a key id must be signed with ES256");
+            }
+            Key key = keyRing.publicKey(kid);
+            if (key == null) {
+                throw new SignatureException("Unknown or retired signing key " + kid);
+            }
+            return key;
+        }
+        if (legacyKey != null && SignatureAlgorithm.HS256.getValue().equals(header.getAlgorithm())) {
+            return legacyKey;
+        }
+        throw new UnsupportedJwtException("Tokens must be signed with ES256 and have a key id");
+    }
 
     public String extractUsername(String token) {
         return extractClaim(token, Claims::getSubject);
@@ -49,36 +105,94 @@ public class JwtUtil {
         return claimsResolver.apply(claims);
     }
 
-    private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(JWT_KEY)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    /**
+     * Verifies the token signature and expiration once, then serves its claims from {@link VerifiedTokenCache}
+     * until it expires.
+     *
+     * @throws io.jsonwebtoken.JwtException if the token is malformed, expired or not signed with our key.
+     */
+    public Claims extractAllClaims(String token) {
+        Claims claims = verifiedTokens.get(token);
+        if (claims == null) {
+            claims = parser.parseClaimsJws(token).getBody();
+            verifiedTokens.put(token, claims);
+        }
+        return claims;
+    }
+
+    private Boolean isTokenExpired(Claims claims) {
+        return claims.getExpiration().before(new Date());
+    }
+
+    /**
+     * @return the token epoch the JWT was issued with, 0 for tokens issued before epochs existed.
+     */
+    public int extractTokenEpoch(Claims claims) {
+        Integer epoch = claims.get(EPOCH_CLAIM, Integer.class);
+        return epoch == null ? 0 : epoch;
     }
 
-    private Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    /**
+     * @return the id of the refresh token (session) the JWT was issued for, or null for tokens issued before
+     * refresh tokens existed.
+     */
+    public Long extractSessionId(Claims claims) {
+        return claims.get(SESSION_ID_CLAIM, Long.class);
+    }
+
+    /**
+     * @return the principal described by the token claims, or null if the token was issued before the user id and
+     * role were added to the claims.
+     */
+    public JwtPrincipal extractPrincipal(Claims claims) {
+        Long userId = claims.get(USER_ID_CLAIM, Long.class);
+        String role = claims.get(ROLE_CLAIM, String.class);
+        if (userId == null || role == null) {
+            return null;
+        }
+        return new JwtPrincipal(userId, claims.getSubject(), AppUserRole.valueOf(role));
     }
 
     public String generateToken(UserDetails userDetails) {
+        int tokenEpoch = userDetails instanceof AppUser appUser ? appUser.getTokenEpoch() : 0;
+        return generateToken(userDetails, tokenEpoch);
+    }
+
+    public String generateToken(UserDetails userDetails, int tokenEpoch) {
+        return generateToken(userDetails, tokenEpoch, null);
+    }
+
+    public String generateToken(UserDetails userDetails, int tokenEpoch, Long sessionId) {
         Map<String, Object> claims = new HashMap<>();
+        claims.put(EPOCH_CLAIM, tokenEpoch);
+        if (sessionId != null) {
+            claims.put(SESSION_ID_CLAIM, sessionId);
+        }
+        if (userDetails instanceof AppUser appUser && appUser.getId() != null && appUser.getRole() != null) {
+            claims.put(USER_ID_CLAIM, appUser.getId());
+            claims.put(ROLE_CLAIM, appUser.getRole().name());
+        }
         return createToken(claims, userDetails.getUsername());
     }
 
     private String createToken(Map<String, Object> claims, String subject) {
+        JwtKeyRing.SigningKey signingKey = keyRing.signingKey();
         return Jwts.builder()
+                .setHeaderParam(JwsHeader.KEY_ID, signingKey.kid())
                 .setClaims(claims)
                 .setSubject(subject)
                 .setIssuedAt(new Date(System.currentTimeMillis()))
-                .setExpiration(new Date(System.currentTimeMillis() + EXPIRATION_TIME))
-                .signWith(SignatureAlgorithm.HS256, JWT_KEY)
+                .setExpiration(new Date(System.currentTimeMillis() + ACCESS_TOKEN_LIFETIME.toMillis()))
+                .signWith(signingKey.privateKey(), SignatureAlgorithm.ES256)
                 .compact();
     }
 
     public boolean validateToken(String token, UserDetails userDetails) {
-        final String tokenUsername = extractUsername(token);
-        return tokenUsername.equals(userDetails.getUsername()) && !isTokenExpired(token);
+        return validateToken(extractAllClaims(token), userDetails);
+    }
+
+    public boolean validateToken(Claims claims, UserDetails userDetails) {
+        return claims.getSubject().equals(userDetails.getUsername()) && !isTokenExpired(claims);
     }
 
 }
@@ -0,0 +1,101 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.duberlyguarnizo.dummyjson.security;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.SecureRandom;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.Base64;
+
+/**
+ * Encrypts the JWT signing keys stored in the <i>jwt_signing_key</i> table with AES-256-GCM, under a key-encryption
+ * key (KEK) that only lives in the environment ({@code JWT_KEK}). A copy of the database alone can't sign tokens.
+ * <p>
+ * The stored value is base64(IV || ciphertext and tag), and the key id is bound as associated data, so an encrypted
+ * key can't be moved to another row.
+ */
+final class SigningKeyCipher {
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int KEK_BYTES = 32;
+    private static final int IV_BYTES = 12;
+    private static final int TAG_BITS = 128;
+
+    private final SecretKeySpec kek;
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * @param base64Kek the base64 encoded 256-bit key-encryption key.
+     * @throws IllegalStateException if the key is missing or is not 256 bits long.
+     */
+    SigningKeyCipher(String base64Kek) {
+        if (base64Kek == null || base64Kek.isBlank()) {
+            throw new IllegalStateException("jwt.signing.kek (JWT_KEK) must be set on signing nodes");
+        }
+        byte[] key;
+        try {
+            key = Base64.getDecoder().decode(base64Kek.trim());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("jwt.signing.kek (JWT_KEK) is not valid base64", e);
+        }
+        if (key.length != KEK_BYTES) {
+            throw new IllegalStateException("jwt.signing.kek (JWT_KEK) must be " + KEK_BYTES + " bytes long, got " + key.length);
+        }
+        this.kek = new SecretKeySpec(key, "AES");
+    }
+
+    String encrypt(String kid, PrivateKey privateKey) throws GeneralSecurityException {
+        byte[] iv = new byte[IV_BYTES];
+        random.nextBytes(iv);
+        Cipher cipher = cipher(Cipher.ENCRYPT_MODE, kid, new GCMParameterSpec(TAG_BITS, iv));
+        byte[] ciphertext = cipher.doFinal(privateKey.getEncoded());
+        return Base64.getEncoder().encodeToString(ByteBuffer.allocate(IV_BYTES + ciphertext.length)
+                .put(iv)
+                .put(ciphertext)
+                .array());
+    }
+
+    /**
+     * @throws javax.crypto.AEADBadTagException if the value was encrypted with another KEK, for another kid, or was
+     *                                          altered.
+     */
+    PrivateKey decrypt(String kid, String encrypted) throws GeneralSecurityException {
+        byte[] value = Base64.getDecoder().decode(encrypted);
+        if (value.length <= IV_BYTES) {
+            throw new GeneralSecurityException("Encrypted signing key " + kid + " is too short");
+        }
+        Cipher cipher = cipher(Cipher.DECRYPT_MODE, kid, new GCMParameterSpec(TAG_BITS, value, 0, IV_BYTES));
+        byte[] pkcs8 = cipher.doFinal(value, IV_BYTES, value.length - IV_BYTES);
+        return KeyFactory.getInstance("EC").generatePrivate(new PKCS8EncodedKeySpec(pkcs8));
+    }
+
+    private Cipher cipher(int mode, String kid, GCMParameterSpec iv) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(mode, kek, iv);
+        cipher.updateAAD(kid.getBytes(StandardCharsets.UTF_8));
+        return cipher;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.duberlyguarnizo.dummyjson.security;
+
+import io.jsonwebtoken.Claims;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Claims of JWTs whose signature has already been verified, keyed by the SHA-256 digest of the token (the token
+ * itself is never kept). An entry is only returned while the token has not expired, so a cache hit is equivalent
+ * to a successful verification. Revocation is not covered here: {@link JwtRequestFilter} checks it afterwards, in
+ * memory, against the {@link com.duberlyguarnizo.dummyjson.jwt_token.RevokedTokenRegistry} and the user's token
+ * epoch.
+ */
+@Component
+public class VerifiedTokenCache {
+    static final int MAX_ENTRIES = 10_000;
+    private final Map<String, Claims> claimsByDigest = new ConcurrentHashMap<>();
+
+    /**
+     * @return the verified claims of the token, or null if it's not cached or has expired since it was cached.
+     */
+    public Claims get(String token) {
+        String digest = TokenDigests.sha256Hex(token);
+        Claims claims = claimsByDigest.get(digest);
+        if (claims != null && isExpired(claims, new Date())) {
+            claimsByDigest.remove(digest);
+            return null;
+        }
+        return claims;
+    }
+
+    /**
+     * Caches the claims of a verified token. Tokens without expiration are not cached, and when the cache is full
+     * (after dropping expired entries) the claims are simply not cached: the token is verified again next time.
+     */
+    public void put(String token, Claims claims) {
+        if (claims.getExpiration() == null) {
+            return;
+        }
+        if (claimsByDigest.size() >= MAX_ENTRIES) {
+            evictExpired();
+            if (claimsByDigest.size() >= MAX_ENTRIES) {
+                return;
+            }
+        }
+        claimsByDigest.put(TokenDigests.sha256Hex(token), claims);
+    }
+
+    public int size() {
+        return claimsByDigest.size();
+    }
+
+    @Scheduled(fixedDelay = 1000 * 60) //every minute
+    public void evictExpired() {
+        Date now = new Date();
+        claimsByDigest.values().removeIf(claims -> isExpired(claims, now));
+    }
+
+    private static boolean isExpired(Claims claims, Date now) {
+        return !claims.getExpiration().after(now);
+    }
+}
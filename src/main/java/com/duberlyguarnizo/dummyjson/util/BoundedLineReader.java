@@ -0,0 +1,86 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.duberlyguarnizo.dummyjson.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the lines of a bulk import body (NDJSON or CSV) one at a time. Lines longer than the maximum are skipped
+ * without being buffered, so a single huge line can't exhaust memory, and returned without text.
+ */
+public class BoundedLineReader {
+    private final BufferedReader reader;
+    private final int maxLength;
+    private int lineNumber;
+
+    public BoundedLineReader(InputStream input, int maxLength) {
+        this.reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * @return the next line, with a trailing carriage return removed, or null at the end of the input.
+     */
+    public Line next() throws IOException {
+        StringBuilder text = new StringBuilder();
+        boolean tooLong = false;
+        int c;
+        while ((c = reader.read()) != -1 && c != '\n') {
+            if (text.length() < maxLength) {
+                text.append((char) c);
+            } else {
+                tooLong = true;
+            }
+        }
+        if (c == -1 && text.isEmpty() && !tooLong) {
+            return null;
+        }
+        lineNumber++;
+        if (!text.isEmpty() && text.charAt(text.length() - 1) == '\r') {
+            text.setLength(text.length() - 1);
+        }
+        return new Line(lineNumber, tooLong ? null : text.toString());
+    }
+
+    /**
+     * @return the number of lines read so far.
+     */
+    public int lineCount() {
+        return lineNumber;
+    }
+
+    /**
+     * @param number 1-based line number.
+     * @param text   the line, or null if it was longer than the maximum.
+     */
+    public record Line(int number, String text) {
+        public boolean tooLong() {
+            return text == null;
+        }
+
+        public boolean isBlank() {
+            return text != null && text.isBlank();
+        }
+    }
+}
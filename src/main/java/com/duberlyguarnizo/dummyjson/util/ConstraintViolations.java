@@ -0,0 +1,55 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.duberlyguarnizo.dummyjson.util;
+
+import java.sql.SQLException;
+import java.util.Locale;
+
+/**
+ * Identifies which database constraint rejected a write, so a violation the application expects (a taken unique
+ * name) can be reported as such instead of as a generic integrity error. Works for writes made through JPA and
+ * through JDBC alike, since both keep the driver's {@link SQLException} as a cause.
+ */
+public final class ConstraintViolations {
+    private static final String INTEGRITY_CONSTRAINT_VIOLATION_CLASS = "23";
+
+    private ConstraintViolations() {
+    }
+
+    /**
+     * @param e          the exception thrown by the write, usually a Spring {@code DataIntegrityViolationException}.
+     * @param constraint the name of the constraint or unique index, as it appears in the database error message
+     *                   (compared ignoring case: H2 reports names in upper case).
+     * @return true if any cause of {@code e} is an integrity constraint violation of {@code constraint}.
+     */
+    public static boolean isViolationOf(Throwable e, String constraint) {
+        String name = constraint.toLowerCase(Locale.ROOT);
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException
+                    && sqlException.getSQLState() != null
+                    && sqlException.getSQLState().startsWith(INTEGRITY_CONSTRAINT_VIOLATION_CLASS)
+                    && sqlException.getMessage() != null
+                    && sqlException.getMessage().toLowerCase(Locale.ROOT).contains(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.duberlyguarnizo.dummyjson.util;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Value;
+
+/**
+ * Result of one line of a bulk import: the id of the created entity, or the reason it was not created.
+ */
+@Value
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ImportLineResult {
+    int line;
+    Long id;
+    String error;
+
+    public static ImportLineResult created(int line, Long id) {
+        return new ImportLineResult(line, id, null);
+    }
+
+    public static ImportLineResult failed(int line, String error) {
+        return new ImportLineResult(line, null, error);
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.duberlyguarnizo.dummyjson.util;
+
+import org.springframework.data.domain.Page;
+
+import java.util.List;
+
+/**
+ * Response body of a paged listing: the rows and the paging numbers a client needs. It replaces the serialized
+ * {@link org.springframework.data.domain.PageImpl}, whose JSON repeats the page request and the sort three times
+ * and has other derived fields (first, last, empty, numberOfElements...).
+ *
+ * @param content       the rows of the page.
+ * @param page          the zero-based page number.
+ * @param size          the requested page size.
+ * @param totalElements the number of rows in every page.
+ * @param totalPages    the number of pages.
+ */
+public record PageResponse<T>(List<T> content, int page, int size, long totalElements, int totalPages) {
+
+    public static <T> PageResponse<T> of(Page<T> page) {
+        return new PageResponse<>(page.getContent(), page.getNumber(), page.getSize(), page.getTotalElements(), page.getTotalPages());
+    }
+}
@@ -1,23 +1,32 @@
-delete
-from json_content
-where id > 0;
-insert into json_content (created_by, modified_by, created_date, id, json, name, path)
-values (1, 1, now(), 1, '{"name":"test"}', 'test1', '/test/test1');
-insert into json_content (created_by, modified_by, created_date, id, json, name, path)
-values (1, 1, now(), 2, '{"name":"test2"}', 'test2', '/test/test2');
-insert into json_content (created_by, modified_by, created_date, id, json, name, path)
-values (1, 1, now(), 3, '{"name":"test3"}', 'test3', '/test/test3');
-insert into json_content (created_by, modified_by, created_date, id, json, name, path)
-values (1, 1, now(), 4, '{"name":"test4"}', 'test4', '/test/test4');
-insert into json_content (created_by, modified_by, created_date, id, json, name, path)
-values (1, 1, now(), 5, '{"name":"test5"}', 'test5', '/test/test5');
-insert into json_content (created_by, modified_by, created_date, id, json, name, path)
-values (1, 1, now(), 6, '{"name":"test6"}', 'test6', '/test/test6');
-insert into json_content (created_by, modified_by, created_date, id, json, name, path)
-values (1, 1, now(), 7, '{"name":"test7"}', 'test7', '/test/test7');
-insert into json_content (created_by, modified_by, created_date, id, json, name, path)
-values (1, 1, now(), 8, '{"name":"test8"}', 'test8', '/test/test8');
-insert into json_content (created_by, modified_by, created_date, id, json, name, path)
-values (1, 1, now(), 9, '{"name":"test9"}', 'test9', '/test/test9');
-insert into json_content (created_by, modified_by, created_date, id, json, name, path)
-values (1, 1, now(), 10, '{"name":"test10"}', 'test10', '/test/test10');
\ No newline at end of file
+-- Sample JSON contents of the first admin, loaded by the dev profile only. Ids come from the sequence and existing
+-- names are skipped (unique per owner since V7), so running it again leaves the table as it is.
+insert into json_content (id, created_by, modified_by, created_date, json, name, path)
+values (nextval('json_content_seq'), 1, 1, now(), '{"name":"test"}', 'test1', '/test/test1')
+on conflict do nothing;
+insert into json_content (id, created_by, modified_by, created_date, json, name, path)
+values (nextval('json_content_seq'), 1, 1, now(), '{"name":"test2"}', 'test2', '/test/test2')
+on conflict do nothing;
+insert into json_content (id, created_by, modified_by, created_date, json, name, path)
+values (nextval('json_content_seq'), 1, 1, now(), '{"name":"test3"}', 'test3', '/test/test3')
+on conflict do nothing;
+insert into json_content (id, created_by, modified_by, created_date, json, name, path)
+values (nextval('json_content_seq'), 1, 1, now(), '{"name":"test4"}', 'test4', '/test/test4')
+on conflict do nothing;
+insert into json_content (id, created_by, modified_by, created_date, json, name, path)
+values (nextval('json_content_seq'), 1, 1, now(), '{"name":"test5"}', 'test5', '/test/test5')
+on conflict do nothing;
+insert into json_content (id, created_by, modified_by, created_date, json, name, path)
+values (nextval('json_content_seq'), 1, 1, now(), '{"name":"test6"}', 'test6', '/test/test6')
+on conflict do nothing;
+insert into json_content (id, created_by, modified_by, created_date, json, name, path)
+values (nextval('json_content_seq'), 1, 1, now(), '{"name":"test7"}', 'test7', '/test/test7')
+on conflict do nothing;
+insert into json_content (id, created_by, modified_by, created_date, json, name, path)
+values (nextval('json_content_seq'), 1, 1, now(), '{"name":"test8"}', 'test8', '/test/test8')
+on conflict do nothing;
+insert into json_content (id, created_by, modified_by, created_date, json, name, path)
+values (nextval('json_content_seq'), 1, 1, now(), '{"name":"test9"}', 'test9', '/test/test9')
+on conflict do nothing;
+insert into json_content (id, created_by, modified_by, created_date, json, name, path)
+values (nextval('json_content_seq'), 1, 1, now(), '{"name":"test10"}', 'test10', '/test/test10')
+on conflict do nothing;
@@ -0,0 +1,52 @@
+-- Baseline: the schema Hibernate generated from the entities while it was managed with ddl-auto: update.
+-- Existing databases created that way are baselined at this version (spring.flyway.baseline-on-migrate).
+
+create sequence app_user_seq start with 1 increment by 50;
+create sequence json_content_seq start with 1 increment by 50;
+create sequence jwt_token_seq start with 1 increment by 50;
+
+create table app_user
+(
+    id            bigint       not null,
+    created_by    bigint,
+    created_date  timestamp(6),
+    modified_by   bigint default 1,
+    modified_date timestamp(6),
+    names         varchar(255),
+    email         varchar(255),
+    id_card       varchar(255),
+    role          varchar(255) not null check (role in ('ADMIN', 'SUPERVISOR', 'USER')),
+    active        boolean      not null,
+    username      varchar(255),
+    password      varchar(255),
+    locked        boolean      not null,
+    constraint app_user_pkey primary key (id),
+    constraint app_user_email_key unique (email),
+    constraint app_user_id_card_key unique (id_card),
+    constraint app_user_username_key unique (username)
+);
+
+create table json_content
+(
+    id            bigint not null,
+    created_by    bigint,
+    created_date  timestamp(6),
+    modified_by   bigint default 1,
+    modified_date timestamp(6),
+    name          varchar(255),
+    json          varchar(2048),
+    path          varchar(255),
+    constraint json_content_pkey primary key (id)
+);
+
+create table jwt_token
+(
+    id           bigint  not null,
+    user_id      bigint,
+    token        varchar(255),
+    revoked      boolean not null,
+    expired      boolean not null,
+    created_date timestamp(6),
+    constraint jwt_token_pkey primary key (id),
+    constraint jwt_token_token_key unique (token)
+);
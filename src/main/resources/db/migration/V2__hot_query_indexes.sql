@@ -0,0 +1,17 @@
+-- Indexes for the repository methods on the request hot path. Spring Data derives "IgnoreCase" lookups as
+-- upper(column) = upper(?), so the functional indexes use upper() to match the generated SQL.
+
+-- JsonContentRepository.findAllByCreatedBy: owner filter, paged by id (the default sort of the list endpoints)
+create index json_content_created_by_id_idx on json_content (created_by, id);
+
+-- JsonContentRepository.findByNameIgnoreCaseAndCreatedBy: name uniqueness check per owner
+create index json_content_created_by_upper_name_idx on json_content (created_by, upper(name));
+
+-- JwtTokenRepository.findByUserId: logout from all devices and token revocation per user
+create index jwt_token_user_id_idx on jwt_token (user_id);
+
+-- JwtTokenRepository.findByCreatedDateBefore: scheduled expiration and deletion tasks
+create index jwt_token_created_date_idx on jwt_token (created_date);
+
+-- AppUserRepository.findByUsernameIgnoreCase: user lookup on every authenticated request and on auditing
+create index app_user_upper_username_idx on app_user (upper(username));
@@ -0,0 +1,3 @@
+-- Token generation counter per user: every JWT carries the value current when it was issued, and bumping it
+-- invalidates all of the user's outstanding tokens at once (log out everywhere, deactivation).
+alter table app_user add column token_epoch integer not null default 0;
@@ -0,0 +1,13 @@
+-- ES256 key pairs used to sign the JWTs, identified by their "kid" (RFC 7638 thumbprint). Keys are rotated on a
+-- schedule and kept until every token they signed has expired. Verification-only nodes use the JWKS endpoint.
+create table jwt_signing_key
+(
+    kid          varchar(255)  not null,
+    public_key   varchar(2048) not null,
+    private_key  varchar(2048),
+    created_date timestamp(6)  not null,
+    constraint jwt_signing_key_pkey primary key (kid)
+);
+
+-- ES256 tokens with a "kid" header are longer than the HS256 ones
+alter table jwt_token alter column token type varchar(1024);
@@ -0,0 +1,11 @@
+-- jwt_token is keyed by the SHA-256 digest of the token (32 bytes) instead of the token itself: the unique index holds
+-- fixed-size keys instead of strings of up to 1024 characters, and a copy of the table doesn't leak usable tokens.
+-- Tokens are ASCII, so the UTF-8 bytes hashed here are the ones TokenDigests hashes.
+alter table jwt_token add column token_digest bytea;
+update jwt_token set token_digest = sha256(convert_to(token, 'UTF8')) where token is not null;
+-- a row without a token can't be looked up, and it's no longer allowed
+delete from jwt_token where token_digest is null;
+alter table jwt_token alter column token_digest set not null;
+alter table jwt_token drop constraint jwt_token_token_key;
+alter table jwt_token drop column token;
+alter table jwt_token add constraint jwt_token_token_digest_key unique (token_digest);
@@ -0,0 +1,44 @@
+-- jwt_token is partitioned by day of created_date, so the scheduled cleanup drops whole partitions instead of deleting
+-- rows (see JwtTokenPartitions, which also creates the partitions ahead of time). A primary key or unique constraint
+-- on a partitioned table must include the partition key, hence (id, created_date) and (token_digest, created_date).
+-- Rows outside every daily partition land in jwt_token_default and are deleted by the batched cleanup.
+create temporary table jwt_token_copy as
+select id, user_id, revoked, expired, coalesce(created_date, localtimestamp) as created_date, token_digest
+from jwt_token;
+drop table jwt_token;
+
+create table jwt_token
+(
+    id           bigint       not null,
+    user_id      bigint,
+    revoked      boolean      not null,
+    expired      boolean      not null,
+    created_date timestamp(6) not null,
+    token_digest bytea        not null,
+    constraint jwt_token_pkey primary key (id, created_date),
+    constraint jwt_token_token_digest_key unique (token_digest, created_date)
+) partition by range (created_date);
+
+create table jwt_token_default partition of jwt_token default;
+
+do
+$$
+    declare
+        day date;
+    begin
+        for day in select generate_series(current_date - 2, current_date + 2, interval '1 day')::date
+            loop
+                execute format('create table jwt_token_p%s partition of jwt_token for values from (%L) to (%L)',
+                               to_char(day, 'YYYYMMDD'), day, day + 1);
+            end loop;
+    end
+$$;
+
+-- same indexes as V2, created on every partition
+create index jwt_token_user_id_idx on jwt_token (user_id);
+create index jwt_token_created_date_idx on jwt_token (created_date);
+
+insert into jwt_token (id, user_id, revoked, expired, created_date, token_digest)
+select id, user_id, revoked, expired, created_date, token_digest
+from jwt_token_copy;
+drop table jwt_token_copy;
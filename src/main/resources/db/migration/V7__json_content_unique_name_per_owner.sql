@@ -0,0 +1,14 @@
+-- A user's JSON contents have case-insensitive unique names. The rule was only checked with a select before each
+-- insert, which two concurrent requests could both pass; now the index enforces it and creation is a single insert.
+-- It keeps upper(), like the index it replaces, because the remaining IgnoreCase lookups are derived with upper().
+
+-- rows that slipped through the old check keep their content under a name made unique with their id
+update json_content
+set name = name || ' (' || id || ')'
+where id in (select id
+             from (select id, row_number() over (partition by created_by, upper(name) order by id) as occurrence
+                   from json_content) ranked
+             where occurrence > 1);
+
+drop index json_content_created_by_upper_name_idx;
+create unique index json_content_created_by_upper_name_key on json_content (created_by, upper(name));
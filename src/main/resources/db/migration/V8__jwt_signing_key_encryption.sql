@@ -0,0 +1,5 @@
+-- Private signing keys are stored encrypted with the key-encryption key of the signing nodes (JWT_KEK). The keys
+-- stored in plain text so far are dropped: their public keys keep verifying the tokens they signed, and the first
+-- signing node that starts creates a new, encrypted, signing key.
+alter table jwt_signing_key rename column private_key to encrypted_private_key;
+update jwt_signing_key set encrypted_private_key = null;
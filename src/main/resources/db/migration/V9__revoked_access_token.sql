@@ -0,0 +1,11 @@
+-- Access tokens revoked on logout, until they expire. RevokedTokenRegistry loads them at startup, so a logged-out
+-- access token stays rejected after a restart.
+create table revoked_access_token
+(
+    token_digest varchar(64)                 not null,
+    expires_at   timestamp(6) with time zone not null,
+    constraint revoked_access_token_pkey primary key (token_digest)
+);
+
+-- RevokedTokenRegistry: startup load of the unexpired rows and scheduled pruning of the expired ones
+create index revoked_access_token_expires_at_idx on revoked_access_token (expires_at);
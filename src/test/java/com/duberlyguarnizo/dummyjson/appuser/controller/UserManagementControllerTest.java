@@ -48,8 +48,9 @@ import static io.restassured.module.mockmvc.RestAssuredMockMvc.given;
 import static org.hamcrest.Matchers.*;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
-@SpringBootTest
+@SpringBootTest(properties = "query-budget.enforce=true") //requests over their @QueryBudget fail
 @Testcontainers
 @AutoConfigureMockMvc
 @TestMethodOrder(MethodOrderer.OrderAnnotation.class)
@@ -565,4 +566,53 @@ class UserManagementControllerTest {
                 .body("status", equalTo(HttpStatus.BAD_REQUEST.value()));
     }
 
-}
\ No newline at end of file
+    @Test
+    @DisplayName("CSV import creates valid users and reports an error for each invalid or duplicated row")
+    @Order(13)
+    void importUsers() {
+        String csv = """
+                names,username,password,email,idCard,role
+                "Doe, Jane",imported-jane,pass-jane,imported-jane@mail.com,87654321,
+                Another Jane,imported-jane,pass-jane,another-jane@mail.com,87654322,USER
+                Admin Again,admin2,pass,adminemail@admin.com,87654323,USER
+                No Password,imported-nopass,,imported-nopass@mail.com,87654324,USER
+                Manager,imported-manager,pass,imported-manager@mail.com,87654325,ADMIN
+                John Doe,imported-john,pass-john,imported-john@mail.com,87654326,user
+                """;
+
+        String results = given()
+                .log()
+                .ifValidationFails()
+                .header("authorization", "Bearer " + supervisorJwt)
+                .and().header("Accept-Language", "en")
+                .contentType("text/csv")
+                .body(csv)
+                .when()
+                .async()
+                .post("/api/v1/management/users/import")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .contentType("application/x-ndjson")
+                .extract()
+                .asString();
+
+        String[] lines = results.split("\n");
+        assertEquals(6, lines.length);
+        assertTrue(lines[0].matches("\\{\"line\":2,\"id\":\\d+}"));
+        assertTrue(lines[1].startsWith("{\"line\":3,\"error\":") && lines[1].contains("username"));
+        assertTrue(lines[2].startsWith("{\"line\":4,\"error\":") && lines[2].contains("email"));
+        assertTrue(lines[3].startsWith("{\"line\":5,\"error\":"));
+        assertTrue(lines[4].startsWith("{\"line\":6,\"error\":"));
+        assertTrue(lines[5].matches("\\{\"line\":7,\"id\":\\d+}"));
+
+        //imported users can log in with their password
+        given()
+                .body("{\"username\": \"imported-jane\", \"password\": \"pass-jane\"}")
+                .contentType(ContentType.JSON)
+                .when()
+                .post("/api/v1/auth/authenticate")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("jwt", notNullValue());
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.duberlyguarnizo.dummyjson.auth;
+
+import com.duberlyguarnizo.dummyjson.exceptions.TooManyLoginAttemptsException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LoginAttemptGuardTest {
+    private final LoginAttemptGuard guard = new LoginAttemptGuard(Duration.ofMinutes(15), 3, 1000);
+
+    @Test
+    @DisplayName("Failures with different casings of a username share one counter")
+    void usernameCaseDoesNotResetTheCounter() {
+        guard.recordFailure("Admin", "10.0.0.1");
+        guard.recordFailure("ADMIN", "10.0.0.2");
+        guard.recordFailure("aDmin", "10.0.0.3");
+
+        assertThrows(TooManyLoginAttemptsException.class, () -> guard.check("admin", "10.0.0.4"));
+        assertThrows(TooManyLoginAttemptsException.class, () -> guard.check("AdMiN", "10.0.0.5"));
+        assertDoesNotThrow(() -> guard.check("other", "10.0.0.4"));
+    }
+}
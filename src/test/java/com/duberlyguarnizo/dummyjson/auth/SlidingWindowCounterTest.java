@@ -0,0 +1,55 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.duberlyguarnizo.dummyjson.auth;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlidingWindowCounterTest {
+    private static final long MINUTE = Duration.ofMinutes(1).toMillis();
+    private final SlidingWindowCounter counter = new SlidingWindowCounter(1 << 10, Duration.ofMinutes(1));
+
+    @Test
+    @DisplayName("The previous window fades out while the sliding window moves over it")
+    void previousWindowFadesOut() {
+        long start = 100 * MINUTE;
+        IntStream.range(0, 10).forEach(i -> counter.increment("alice", start));
+
+        assertEquals(10, counter.estimate("alice", start + MINUTE / 2), 0.001);
+        assertEquals(5, counter.estimate("alice", start + MINUTE + MINUTE / 2), 0.001);
+        assertEquals(0, counter.estimate("alice", start + 2 * MINUTE), 0.001);
+        assertEquals(0, counter.estimate("bob", start), 0.001);
+    }
+
+    @Test
+    @DisplayName("Memory stays fixed with many keys, and the counted key is never under-estimated")
+    void manyKeysNeverUnderCount() {
+        long now = 100 * MINUTE;
+        IntStream.range(0, 5).forEach(i -> counter.increment("alice", now));
+        IntStream.range(0, 100_000).forEach(i -> counter.increment("random-" + i, now));
+
+        assertTrue(counter.estimate("alice", now) >= 5);
+    }
+}
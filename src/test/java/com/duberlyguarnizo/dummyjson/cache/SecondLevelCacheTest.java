@@ -0,0 +1,128 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.duberlyguarnizo.dummyjson.cache;
+
+import com.duberlyguarnizo.dummyjson.appuser.AppUser;
+import com.duberlyguarnizo.dummyjson.appuser.AppUserRepository;
+import com.duberlyguarnizo.dummyjson.appuser.AppUserRole;
+import com.duberlyguarnizo.dummyjson.jsoncontent.JsonContent;
+import com.duberlyguarnizo.dummyjson.jsoncontent.JsonContentRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Lookups by id and by username are served from the second-level cache, and a committed change replaces the cached
+ * entry. Each repository call runs in its own transaction, so only the second-level cache (not the persistence
+ * context) can avoid the database.
+ */
+@SpringBootTest
+@Testcontainers
+class SecondLevelCacheTest {
+    @Container
+    public static final PostgreSQLContainer<?> container = new PostgreSQLContainer<>(
+            "postgres:latest")
+            .withUsername("tc_user")
+            .withPassword("tc_password")
+            .withDatabaseName("tc_db");
+
+    @DynamicPropertySource
+    public static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", container::getJdbcUrl);
+        registry.add("spring.datasource.username", container::getUsername);
+        registry.add("spring.datasource.password", container::getPassword);
+        registry.add("spring.datasource.driver-class-name", container::getDriverClassName);
+    }
+
+    @Autowired
+    private JsonContentRepository jsonContentRepository;
+    @Autowired
+    private AppUserRepository appUserRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    @DisplayName("JsonContent by id is read from the cache and refreshed when it changes")
+    void jsonContentById() {
+        Long id = jsonContentRepository.save(JsonContent.builder()
+                .name("cached")
+                .json("{\"version\":1}")
+                .path("/cached")
+                .build()).getId();
+
+        assertEquals("{\"version\":1}", jsonContentRepository.findById(id).orElseThrow().getJson());
+        assertEquals("{\"version\":1}", jsonContentRepository.findById(id).orElseThrow().getJson());
+        CacheRegionStatistics region = statistics.getDomainDataRegionStatistics("jsonContent");
+        assertEquals(2, region.getHitCount());
+        assertEquals(0, region.getMissCount());
+
+        transactionTemplate.executeWithoutResult(status ->
+                jsonContentRepository.findById(id).orElseThrow().setJson("{\"version\":2}"));
+        assertEquals("{\"version\":2}", jsonContentRepository.findById(id).orElseThrow().getJson());
+        assertEquals(0, region.getMissCount());
+    }
+
+    @Test
+    @DisplayName("AppUser by username is resolved from the natural-id cache and follows username changes")
+    void appUserByUsername() {
+        Long id = appUserRepository.save(AppUser.builder()
+                .names("Cached User")
+                .username("cached-user")
+                .email("cached-user@example.com")
+                .idCard("CACHED-1")
+                .password("not-a-real-hash")
+                .role(AppUserRole.USER)
+                .active(true)
+                .build()).getId();
+
+        assertEquals(id, appUserRepository.findByNaturalUsername("cached-user").orElseThrow().getId());
+        assertEquals(id, appUserRepository.findByNaturalUsername("cached-user").orElseThrow().getId());
+        assertEquals(2, statistics.getDomainDataRegionStatistics("appUserByUsername").getHitCount());
+        assertEquals(2, statistics.getDomainDataRegionStatistics("appUser").getHitCount());
+
+        transactionTemplate.executeWithoutResult(status ->
+                appUserRepository.findById(id).orElseThrow().setUsername("renamed-cached-user"));
+        assertTrue(appUserRepository.findByNaturalUsername("cached-user").isEmpty());
+        assertEquals(id, appUserRepository.findByNaturalUsername("renamed-cached-user").orElseThrow().getId());
+    }
+}
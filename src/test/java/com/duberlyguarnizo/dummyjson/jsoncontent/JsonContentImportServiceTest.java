@@ -0,0 +1,89 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.duberlyguarnizo.dummyjson.jsoncontent;
+
+import com.duberlyguarnizo.dummyjson.jsoncontent.dto.JsonContentMapperImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class JsonContentImportServiceTest {
+    private static final JsonContentImportService.Messages MESSAGES =
+            new JsonContentImportService.Messages("invalid line", "too long", "name taken", "save error");
+
+    @Test
+    @DisplayName("A name taken after the check fails only its own line, and every row keeps its owner as creator and modifier")
+    void uniqueNameRaceFailsOnlyItsLine() throws Exception {
+        JsonContentRepository repository = mock(JsonContentRepository.class);
+        List<JsonContent> saved = new ArrayList<>();
+        when(repository.findUpperNamesByCreatedBy(anyLong(), anyCollection())).thenReturn(List.of());
+        when(repository.saveAll(any())).thenThrow(uniqueNameViolation());
+        when(repository.save(any())).thenAnswer(invocation -> {
+            JsonContent content = invocation.getArgument(0);
+            if (content.getName().equals("taken meanwhile")) {
+                throw uniqueNameViolation();
+            }
+            content.setId(100L + saved.size());
+            saved.add(content);
+            return content;
+        });
+        var service = new JsonContentImportService(repository, new JsonContentMapperImpl(), null, null,
+                new ObjectMapper(), Validation.buildDefaultValidatorFactory().getValidator());
+        String ndjson = """
+                {"name": "first", "json": "{'key': 1}"}
+                {"name": "taken meanwhile", "json": "{'key': 2}"}
+                {"name": "third", "json": "{'key': 3}"}
+                """;
+
+        var output = new ByteArrayOutputStream();
+        service.importLines(7L, MESSAGES, new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)), output);
+
+        assertEquals("""
+                {"line":1,"id":100}
+                {"line":2,"error":"name taken"}
+                {"line":3,"id":101}
+                """, output.toString(StandardCharsets.UTF_8));
+        verify(repository, times(3)).save(any());
+        for (JsonContent content : saved) {
+            assertEquals(7L, content.getCreatedBy());
+            assertEquals(7L, content.getModifiedBy());
+        }
+    }
+
+    private static DataIntegrityViolationException uniqueNameViolation() {
+        return new DataIntegrityViolationException("could not execute statement", new SQLException(
+                "duplicate key value violates unique constraint \"" + JsonContent.UNIQUE_NAME_PER_OWNER + "\"", "23505"));
+    }
+}
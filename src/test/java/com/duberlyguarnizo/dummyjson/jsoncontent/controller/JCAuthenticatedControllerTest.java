@@ -45,9 +45,9 @@ import java.util.List;
 
 import static io.restassured.module.mockmvc.RestAssuredMockMvc.given;
 import static org.hamcrest.Matchers.*;
-import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.*;
 
-@SpringBootTest
+@SpringBootTest(properties = "query-budget.enforce=true") //requests over their @QueryBudget fail
 @Testcontainers
 @AutoConfigureMockMvc
 @TestMethodOrder(MethodOrderer.OrderAnnotation.class)
@@ -299,6 +299,21 @@ class JCAuthenticatedControllerTest {
                 .body("json", equalTo("['key':'value']"))
                 .body("path", equalTo("/json/4/new-json-content"));
 
+        // Names are unique per user, ignoring case: the insert is rejected by the unique index
+        given()
+                .log()
+                .ifValidationFails()
+                .header("authorization", "Bearer " + clientJwt)
+                .and().header("Accept-Language", "es")
+                .accept(ContentType.JSON)
+                .contentType(ContentType.JSON)
+                .body(newJsonContent.replace("New Json Content", "NEW JSON CONTENT"))
+                .when()
+                .post("/api/v1/authenticated/json")
+                .then()
+                .statusCode(HttpStatus.INTERNAL_SERVER_ERROR.value())
+                .body("detail", equalTo("Ya existe contenido JSON con este nombre para este usuario."));
+
     }
 
     @Test
@@ -350,6 +365,33 @@ class JCAuthenticatedControllerTest {
 
         Long idToDelete = jcIdList.get(0); // Update index to choose id to delete
 
+        // Another user can't modify it: the owner-scoped statements change no row, and the probe finds it exists
+        given()
+                .log()
+                .ifValidationFails()
+                .header("authorization", "Bearer " + superJwt)
+                .and().header("Accept-Language", "es")
+                .contentType(ContentType.JSON)
+                .body("""
+                        {
+                          "name": "Not my Json Content",
+                          "json": "{'key': 'value'}"
+                        }""")
+                .when()
+                .patch("/api/v1/authenticated/json/" + idToDelete)
+                .then()
+                .statusCode(HttpStatus.UNAUTHORIZED.value());
+        given()
+                .log()
+                .ifValidationFails()
+                .header("authorization", "Bearer " + superJwt)
+                .and().header("Accept-Language", "es")
+                .accept(ContentType.JSON)
+                .when()
+                .delete("/api/v1/authenticated/json/{id}", idToDelete)
+                .then()
+                .statusCode(HttpStatus.UNAUTHORIZED.value());
+
         given()
                 .log()
                 .ifValidationFails()
@@ -372,6 +414,63 @@ class JCAuthenticatedControllerTest {
                 .get("/api/v1/authenticated/json/{id}", idToDelete)
                 .then()
                 .statusCode(HttpStatus.NOT_FOUND.value());
+        given()
+                .log()
+                .ifValidationFails()
+                .header("authorization", "Bearer " + clientJwt)
+                .and().header("Accept-Language", "es")
+                .accept(ContentType.JSON)
+                .when()
+                .delete("/api/v1/authenticated/json/{id}", idToDelete)
+                .then()
+                .statusCode(HttpStatus.NOT_FOUND.value());
     }
 
-}
\ No newline at end of file
+    @Test
+    @DisplayName("NDJSON import creates valid lines and reports an error for each invalid one")
+    @Order(5)
+    void importJsonContents(@Autowired JsonContentRepository repository) {
+        String ndjson = """
+                {"name": "imported one", "json": "{'key': 1}", "path": "/json/imported-one"}
+                not a json line
+                {"name": "imported one", "json": "{'key': 2}"}
+                {"name": "imported two", "json": "{}"}
+                {"name": "imported three", "json": "{'key': 3}"}
+                """;
+
+        String results = given()
+                .log()
+                .ifValidationFails()
+                .header("authorization", "Bearer " + clientJwt)
+                .and().header("Accept-Language", "en")
+                .contentType("application/x-ndjson")
+                .body(ndjson)
+                .when()
+                .async()
+                .post("/api/v1/authenticated/json/import")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .contentType("application/x-ndjson")
+                .extract()
+                .asString();
+
+        String[] lines = results.split("\n");
+        assertEquals(5, lines.length);
+        assertTrue(lines[0].matches("\\{\"line\":1,\"id\":\\d+}"));
+        assertTrue(lines[1].startsWith("{\"line\":2,\"error\":"));
+        assertTrue(lines[2].contains("already exists"));
+        assertTrue(lines[3].startsWith("{\"line\":4,\"error\":"));
+        assertTrue(lines[4].matches("\\{\"line\":5,\"id\":\\d+}"));
+        JsonContent imported = repository.findById(Long.valueOf(lines[0].replaceAll("\\D*\"id\":(\\d+)}", "$1"))).orElseThrow();
+        assertEquals(clientUserId, imported.getCreatedBy());
+        assertEquals(clientUserId, imported.getModifiedBy()); //set explicitly, auditing has no user on the async thread
+
+        given()
+                .header("authorization", "Bearer " + clientJwt)
+                .when()
+                .get("/api/v1/authenticated/json")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("content.name", hasItems("imported one", "imported three"));
+    }
+}
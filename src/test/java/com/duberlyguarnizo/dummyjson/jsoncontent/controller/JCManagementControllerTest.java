@@ -41,14 +41,20 @@ import org.testcontainers.containers.PostgreSQLContainer;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import static io.restassured.module.jsv.JsonSchemaValidator.matchesJsonSchema;
 import static io.restassured.module.mockmvc.RestAssuredMockMvc.given;
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
-@SpringBootTest
+@SpringBootTest(properties = "query-budget.enforce=true") //requests over their @QueryBudget fail
 @Testcontainers
 @AutoConfigureMockMvc
 @TestMethodOrder(MethodOrderer.OrderAnnotation.class)
@@ -343,7 +349,7 @@ class JCManagementControllerTest {
                 .statusCode(HttpStatus.OK.value())
                 .contentType(ContentType.JSON)
                 .body("content.size()", greaterThan(0))
-                .body("empty", equalTo(false));
+                .body("totalElements", greaterThan(0));
     }
 
     @Test
@@ -362,7 +368,7 @@ class JCManagementControllerTest {
                 .statusCode(HttpStatus.OK.value())
                 .contentType(ContentType.JSON)
                 .body("content", is(empty()))
-                .body("empty", equalTo(true));
+                .body("totalElements", equalTo(0));
     }
 
     @Test
@@ -414,7 +420,7 @@ class JCManagementControllerTest {
                 .statusCode(HttpStatus.OK.value())
                 .contentType(ContentType.JSON)
                 .body("content.size()", greaterThan(0))
-                .body("empty", equalTo(false));
+                .body("totalElements", greaterThan(0));
     }
 
 
@@ -550,6 +556,59 @@ class JCManagementControllerTest {
 
     @Test
     @Order(15)
+    void exportJsonContentByUser() throws IOException {
+        String ndjson = given()
+                .log()
+                .ifValidationFails()
+                .header("Authorization", "Bearer " + adminJwt)
+                .when()
+                .async()
+                .get("/api/v1/management/json/export/by-user/{id}", supervisorId)
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .contentType("application/x-ndjson")
+                .extract()
+                .asString();
+        String[] lines = ndjson.split("\n");
+        assertTrue(lines.length > 0);
+        for (String line : lines) {
+            assertTrue(line.contains("\"createdBy\":" + supervisorId + ","));
+        }
+
+        byte[] zip = given()
+                .log()
+                .ifValidationFails()
+                .header("Authorization", "Bearer " + adminJwt)
+                .queryParam("format", "ZIP")
+                .when()
+                .async()
+                .get("/api/v1/management/json/export/by-user/{id}", supervisorId)
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .contentType("application/zip")
+                .extract()
+                .asByteArray();
+        int files = 0;
+        try (var zipStream = new ZipInputStream(new ByteArrayInputStream(zip))) {
+            for (ZipEntry entry = zipStream.getNextEntry(); entry != null; entry = zipStream.getNextEntry()) {
+                assertTrue(entry.getName().startsWith(supervisorId + "/"));
+                files++;
+            }
+        }
+        assertEquals(lines.length, files);
+
+        given()
+                .log()
+                .ifValidationFails()
+                .header("Authorization", "Bearer " + clientJwt)
+                .when()
+                .get("/api/v1/management/json/export")
+                .then()
+                .statusCode(HttpStatus.FORBIDDEN.value());
+    }
+
+    @Test
+    @Order(16)
     void testNoJsonContentData() {// last method, as it requires to empty the DB
         methodJcRepository.deleteAll();
         given()
@@ -564,7 +623,7 @@ class JCManagementControllerTest {
                 .statusCode(HttpStatus.OK.value())
                 .contentType(ContentType.JSON)
                 .body("content", is(empty()))
-                .body("empty", equalTo(true));
+                .body("totalElements", equalTo(0));
         ;
     }
 }
\ No newline at end of file
@@ -49,7 +49,7 @@ import java.util.List;
 import static io.restassured.module.mockmvc.RestAssuredMockMvc.given;
 import static org.hamcrest.Matchers.*;
 
-@SpringBootTest
+@SpringBootTest(properties = "query-budget.enforce=true") //requests over their @QueryBudget fail
 @Testcontainers
 @AutoConfigureMockMvc
 @TestMethodOrder(MethodOrderer.OrderAnnotation.class)
@@ -300,7 +300,7 @@ class JCPublicControllerTest {
                 .contentType(ContentType.JSON)
                 .body("content", not(emptyArray()))
                 .body("content[0].name", equalTo("pharmacy product"))
-                .body("empty", equalTo(false));
+                .body("totalElements", greaterThan(0));
     }
 
     @Test
@@ -322,7 +322,7 @@ class JCPublicControllerTest {
                 .contentType(ContentType.JSON)
                 .body("content", not(emptyArray()))
                 .body("content[0].name", equalTo("pharmacy product"))
-                .body("empty", equalTo(false));
+                .body("totalElements", greaterThan(0));
     }
 
     @Test
@@ -340,7 +340,7 @@ class JCPublicControllerTest {
                 .then()
                 .statusCode(HttpStatus.OK.value())
                 .contentType(ContentType.JSON)
-                .body("empty", equalTo(true));
+                .body("totalElements", equalTo(0));
     }
 
     @Test
@@ -359,7 +359,7 @@ class JCPublicControllerTest {
                 .then()
                 .statusCode(HttpStatus.OK.value())
                 .contentType(ContentType.JSON)
-                .body("empty", equalTo(true));
+                .body("totalElements", equalTo(0));
     }
 
 }
\ No newline at end of file
@@ -18,11 +18,20 @@
 
 package com.duberlyguarnizo.dummyjson.jwt_token;
 
+import com.duberlyguarnizo.dummyjson.appuser.AppUser;
+import com.duberlyguarnizo.dummyjson.appuser.AppUserRepository;
+import com.duberlyguarnizo.dummyjson.appuser.AppUserRole;
 import com.duberlyguarnizo.dummyjson.exceptions.ForbiddenActionException;
 import com.duberlyguarnizo.dummyjson.exceptions.IdNotFoundException;
+import com.duberlyguarnizo.dummyjson.exceptions.JwtValidationException;
 import com.duberlyguarnizo.dummyjson.exceptions.RepositoryException;
+import com.duberlyguarnizo.dummyjson.security.AuthEventPublisher;
+import com.duberlyguarnizo.dummyjson.security.JwtPrincipal;
 import com.duberlyguarnizo.dummyjson.security.JwtUtil;
+import com.duberlyguarnizo.dummyjson.security.TokenDigests;
 import com.duberlyguarnizo.dummyjson.util.ControllerUtils;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -32,6 +41,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 
@@ -42,6 +52,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -58,6 +69,21 @@ class JwtTokenServiceTest {
     @Mock
     private ControllerUtils utils;
 
+    @Mock
+    private RevokedTokenRegistry revokedTokens;
+
+    @Mock
+    private TokenEpochs tokenEpochs;
+
+    @Mock
+    private AppUserRepository userRepository;
+
+    @Mock
+    private JwtTokenPartitions partitions;
+
+    @Mock
+    private AuthEventPublisher events;
+
     @AfterAll
     public static void destroy() {
         SecurityContextHolder.getContext().setAuthentication(null);
@@ -138,7 +164,7 @@ class JwtTokenServiceTest {
         Long userId = 1L;
 
         JwtToken jwtToken = JwtToken.builder()
-                .token(jwt)
+                .tokenDigest(TokenDigests.sha256(jwt))
                 .userId(userId)
                 .expired(false)
                 .revoked(false)
@@ -150,18 +176,102 @@ class JwtTokenServiceTest {
         Mockito.verify(tokenRepository, Mockito.times(1)).save(any());
     }
 
+    @Test
+    void issueTokensSavesRefreshTokenAndBindsAccessTokenToIt() {
+        AppUser user = AppUser.builder().id(1L).username("testUser").build();
+        when(tokenRepository.save(any(JwtToken.class))).thenAnswer(invocation -> {
+            JwtToken saved = invocation.getArgument(0);
+            saved.setId(7L);
+            return saved;
+        });
+        when(tokenEpochs.current(1L)).thenReturn(2);
+        when(jwtUtil.generateToken(user, 2, 7L)).thenReturn("access");
+
+        var tokens = jwtTokenService.issueTokens(user);
+
+        assertEquals("access", tokens.accessToken());
+        assertEquals(43, tokens.refreshToken().length()); //32 random bytes, base64url without padding
+        verify(tokenRepository).save(argThat(t -> Arrays.equals(t.getTokenDigest(), TokenDigests.sha256(tokens.refreshToken())) && t.getUserId() == 1L));
+    }
+
+    @Test
+    void refreshTokensRotatesTheRefreshToken() {
+        AppUser user = AppUser.builder().id(1L).username("testUser").active(true).build();
+        when(tokenRepository.findByToken("refresh")).thenReturn(Optional.of(refreshToken(false)));
+        when(tokenRepository.revokeIfActive(5L)).thenReturn(1);
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(tokenRepository.save(any(JwtToken.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(jwtUtil.generateToken(eq(user), anyInt(), any())).thenReturn("access");
+
+        var tokens = jwtTokenService.refreshTokens("refresh");
+
+        assertEquals("access", tokens.accessToken());
+        Assertions.assertNotEquals("refresh", tokens.refreshToken());
+        verify(tokenEpochs, never()).bump(any());
+    }
+
+    @Test
+    void refreshTokensRevokesEverySessionWhenATokenIsReused() {
+        when(tokenRepository.findByToken("refresh")).thenReturn(Optional.of(refreshToken(true)));
+
+        assertThrows(JwtValidationException.class, () -> jwtTokenService.refreshTokens("refresh"));
+
+        verify(tokenRepository, times(1)).deleteAllByUserId(1L);
+        verify(tokenEpochs, times(1)).bump(1L);
+        verify(jwtUtil, never()).generateToken(any(), anyInt(), any());
+    }
+
+    @Test
+    void refreshTokensRevokesEverySessionWhenAConcurrentRefreshWon() {
+        when(tokenRepository.findByToken("refresh")).thenReturn(Optional.of(refreshToken(false)));
+        when(tokenRepository.revokeIfActive(5L)).thenReturn(0);
+
+        assertThrows(JwtValidationException.class, () -> jwtTokenService.refreshTokens("refresh"));
+
+        verify(tokenEpochs, times(1)).bump(1L);
+    }
+
+    @Test
+    void refreshTokensRejectsUnknownTokens() {
+        when(tokenRepository.findByToken("refresh")).thenReturn(Optional.empty());
+
+        assertThrows(JwtValidationException.class, () -> jwtTokenService.refreshTokens("refresh"));
+    }
+
     @Test
     void revokeTokenSuccessTest() {
         // Setup
         String testToken = "Bearer testToken";
+        Claims claims = Jwts.claims().setExpiration(new Date(System.currentTimeMillis() + 60_000));
+        when(jwtUtil.extractUsername(anyString())).thenReturn("testUser");
+        when(jwtUtil.extractAllClaims("testToken")).thenReturn(claims);
+        when(jwtUtil.extractSessionId(claims)).thenReturn(7L);
+
+        // Execute
+        jwtTokenService.revokeToken(testToken);
+
+        // Verify: the session's refresh token is deleted and the access token is revoked until it expires
+        verify(tokenRepository, times(1)).deleteById(7L);
+        verify(revokedTokens, times(1)).revoke("testToken", claims.getExpiration().toInstant());
+        verify(events, times(1)).tokenRevoked("testToken", claims.getExpiration().toInstant());
+    }
+
+    @Test
+    void revokeTokenIssuedBeforeRefreshTokensTest() {
+        // Setup
+        String testToken = "Bearer testToken";
+        Claims claims = Jwts.claims().setExpiration(new Date(System.currentTimeMillis() + 60_000));
         when(jwtUtil.extractUsername(anyString())).thenReturn("testUser");
-        when(tokenRepository.findByToken(anyString())).thenReturn(Optional.of(new JwtToken()));
+        when(jwtUtil.extractAllClaims("testToken")).thenReturn(claims);
+        when(jwtUtil.extractSessionId(claims)).thenReturn(null);
+        when(tokenRepository.findByToken("testToken")).thenReturn(Optional.of(new JwtToken()));
 
         // Execute
         jwtTokenService.revokeToken(testToken);
 
         // Verify
-        verify(tokenRepository, times(1)).save(any(JwtToken.class));
+        verify(tokenRepository, times(1)).save(argThat(JwtToken::isRevoked));
+        verify(revokedTokens, times(1)).revoke(eq("testToken"), any());
     }
 
     @Test
@@ -180,14 +290,17 @@ class JwtTokenServiceTest {
         // Setup
         String testToken = "Bearer testToken";
         when(jwtUtil.extractUsername(anyString())).thenReturn("testUser");
-        when(tokenRepository.findByToken(anyString())).thenReturn(Optional.of(new JwtToken()));
-        when(tokenRepository.findByUserId(any())).thenReturn(Arrays.asList(new JwtToken(), new JwtToken()));
+        JwtPrincipal principal = new JwtPrincipal(1L, "testUser", AppUserRole.USER);
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(principal, null));
 
         // Execute
         jwtTokenService.revokeAllCurrentUserTokens(testToken);
 
-        // Verify
-        verify(tokenRepository, times(2)).save(any(JwtToken.class));
+        // Verify: one epoch bump and one bulk delete of the refresh tokens, no token row is loaded or saved
+        verify(tokenEpochs, times(1)).bump(1L);
+        verify(tokenRepository, times(1)).deleteAllByUserId(1L);
+        verify(tokenRepository, never()).findByUserId(any());
+        verify(tokenRepository, never()).save(any(JwtToken.class));
     }
 
     @Test
@@ -204,21 +317,22 @@ class JwtTokenServiceTest {
     void revokeAllUserTokensByUserIdSuccessTest() {
         // Setup
         Long userId = 1L;
-        List<JwtToken> tokens = Arrays.asList(new JwtToken(), new JwtToken());
-        when(tokenRepository.findByUserId(userId)).thenReturn(tokens);
+        when(tokenEpochs.bump(userId)).thenReturn(true);
 
         // Execute
         jwtTokenService.revokeAllUserTokensByUserId(userId);
 
         // Verify
-        verify(tokenRepository, times(tokens.size())).deleteById(any());
+        verify(tokenEpochs, times(1)).bump(userId);
+        verify(tokenRepository, times(1)).deleteAllByUserId(userId);
+        verify(tokenRepository, never()).findByUserId(any());
     }
 
     @Test
     void revokeAllUserTokensByUserIdIdNotFoundExceptionTest() {
         // Setup
         Long userId = 1L;
-        when(tokenRepository.findByUserId(userId)).thenReturn(Collections.emptyList());
+        when(tokenEpochs.bump(userId)).thenReturn(false);
         when(utils.getMessage(anyString(), any())).thenReturn("exception_id_not_found_token_user");
 
         // Execute
@@ -232,12 +346,41 @@ class JwtTokenServiceTest {
     void revokeAllUserTokensByUserIdRepositoryExceptionTest() {
         // Setup
         Long userId = 1L;
-        List<JwtToken> tokens = Arrays.asList(new JwtToken(), new JwtToken());
-        when(tokenRepository.findByUserId(userId)).thenReturn(tokens);
-        doThrow(IllegalArgumentException.class).when(tokenRepository).deleteById(any());
+        doThrow(new DataAccessResourceFailureException("connection lost")).when(tokenEpochs).bump(userId);
+        when(utils.getMessage("exception_repository_save_error_token_revoke")).thenReturn("exception_repository_save_error_token_revoke");
         // Execute
-        assertThrows(RepositoryException.class, () -> jwtTokenService.revokeAllUserTokensByUserId(userId));
+        Exception exception = assertThrows(RepositoryException.class, () -> jwtTokenService.revokeAllUserTokensByUserId(userId));
+
+        // Verify
+        assertEquals("exception_repository_save_error_token_revoke", exception.getMessage());
+        verify(tokenRepository, never()).deleteAllByUserId(any());
+
+    }
+
+    @Test
+    void scheduledTokenExpirationTaskRunsBatchesUntilAShortOne() {
+        when(tokenRepository.expireCreatedBefore(any(), anyInt())).thenReturn(5_000, 5_000, 12);
 
+        jwtTokenService.scheduledTokenExpirationTask();
+
+        verify(tokenRepository, times(3)).expireCreatedBefore(any(), eq(5_000));
+        verify(tokenRepository, never()).save(any());
     }
 
-}
\ No newline at end of file
+    @Test
+    void scheduleTokenDeleteTaskDropsPartitionsBeforeDeletingRows() {
+        when(partitions.dropBefore(any())).thenReturn(1);
+        when(tokenRepository.deleteExpiredCreatedBefore(any(), anyInt())).thenReturn(0);
+
+        jwtTokenService.scheduleTokenDeleteTask();
+
+        var inOrder = inOrder(partitions, tokenRepository);
+        inOrder.verify(partitions).dropBefore(any());
+        inOrder.verify(tokenRepository, times(1)).deleteExpiredCreatedBefore(any(), eq(5_000));
+        verify(tokenRepository, never()).deleteById(any());
+    }
+
+    private static JwtToken refreshToken(boolean revoked) {
+        return JwtToken.builder().id(5L).userId(1L).tokenDigest(TokenDigests.sha256("refresh")).revoked(revoked).createdDate(LocalDateTime.now()).build();
+    }
+}
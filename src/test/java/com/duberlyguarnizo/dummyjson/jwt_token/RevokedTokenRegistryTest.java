@@ -0,0 +1,81 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.duberlyguarnizo.dummyjson.jwt_token;
+
+import com.duberlyguarnizo.dummyjson.security.TokenDigests;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class RevokedTokenRegistryTest {
+    private final RevokedAccessTokenRepository repository = mock(RevokedAccessTokenRepository.class);
+    private final RevokedTokenRegistry registry = new RevokedTokenRegistry(repository);
+
+    @Test
+    @DisplayName("Revocations are visible as soon as revoke returns")
+    void revokeIsImmediate() {
+        Instant expiration = Instant.now().plus(5, ChronoUnit.MINUTES);
+        IntStream.range(0, 1000).forEach(i -> registry.revoke("jwt-" + i, expiration));
+
+        IntStream.range(0, 1000).forEach(i -> assertTrue(registry.isRevoked("jwt-" + i)));
+        IntStream.range(1000, 2000).forEach(i -> assertFalse(registry.isRevoked("jwt-" + i)));
+    }
+
+    @Test
+    @DisplayName("Expired tokens are pruned and the Bloom filter is rebuilt without them")
+    void pruneDropsExpiredTokens() {
+        registry.revoke("expired", Instant.now().minus(1, ChronoUnit.MINUTES));
+        registry.revoke("valid", Instant.now().plus(5, ChronoUnit.MINUTES));
+        assertTrue(registry.isRevoked("expired"));
+
+        registry.prune();
+
+        assertFalse(registry.isRevoked("expired"));
+        assertTrue(registry.isRevoked("valid"));
+        assertEquals(1, registry.size());
+    }
+
+    @Test
+    @DisplayName("Revocations are stored, and a new registry loads the unexpired ones")
+    void revocationsSurviveRestart() {
+        Instant expiration = Instant.now().plus(5, ChronoUnit.MINUTES);
+        registry.revoke("logged-out", expiration);
+        var stored = new RevokedAccessToken(TokenDigests.sha256Hex("logged-out"), expiration);
+        verify(repository).save(argThat(token -> token.getTokenDigest().equals(stored.getTokenDigest())
+                                                 && token.getExpiresAt().equals(expiration)));
+        when(repository.findByExpiresAtAfter(any())).thenReturn(List.of(stored));
+
+        RevokedTokenRegistry restarted = new RevokedTokenRegistry(repository);
+        restarted.init();
+
+        assertTrue(restarted.isRevoked("logged-out"));
+        assertFalse(restarted.isRevoked("other"));
+
+        restarted.prune();
+        verify(repository).deleteByExpiresAtBefore(any());
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.duberlyguarnizo.dummyjson.migration;
+
+import com.duberlyguarnizo.dummyjson.appuser.AppUserRepository;
+import com.duberlyguarnizo.dummyjson.jsoncontent.JsonContentRepository;
+import com.duberlyguarnizo.dummyjson.jwt_token.JwtTokenRepository;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies that the indexes created by the migrations are usable by the SQL that Hibernate generates for each hot
+ * repository method. The method is called in a rolled back transaction while {@link CapturingStatementInspector}
+ * records its statement, which is then explained as a generic plan (its parameters stay unbound). Tables are nearly
+ * empty in tests, so sequential scans are disabled for the transaction: the planner then picks the index if, and only
+ * if, it matches the query shape. <i>jwt_token</i> is partitioned, so its plans name the index of each partition,
+ * which ends like the name of the parent index.
+ */
+@SpringBootTest
+@Testcontainers
+class HotQueryIndexesTest {
+    @Container
+    public static final PostgreSQLContainer<?> container = new PostgreSQLContainer<>(
+            "postgres:latest") // explain (generic_plan) needs PostgreSQL 16 or later
+            .withUsername("tc_user")
+            .withPassword("tc_password")
+            .withDatabaseName("tc_db");
+
+    @DynamicPropertySource
+    public static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", container::getJdbcUrl);
+        registry.add("spring.datasource.username", container::getUsername);
+        registry.add("spring.datasource.password", container::getPassword);
+        registry.add("spring.datasource.driver-class-name", container::getDriverClassName);
+        registry.add("spring.jpa.properties.hibernate.session_factory.statement_inspector",
+                CapturingStatementInspector.class::getName);
+    }
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @Autowired
+    JsonContentRepository jsonContentRepository;
+    @Autowired
+    JwtTokenRepository jwtTokenRepository;
+    @Autowired
+    AppUserRepository appUserRepository;
+
+    @ParameterizedTest(name = "{0} uses {1}")
+    @DisplayName("Each hot repository query is planned with its purpose-built index")
+    @CsvSource(delimiter = '|', textBlock = """
+            findBasicByCreatedBy             | json_content_created_by_id_idx
+            findUpperNamesByCreatedBy        | json_content_created_by_upper_name_key
+            findByUserId                     | _user_id_idx
+            expireCreatedBefore              | _created_date_idx
+            findByTokenDigest                | _token_digest_created_date_key
+            findByUsernameIgnoreCase         | app_user_upper_username_idx
+            """)
+    void hotQueryUsesIndex(String repositoryMethod, String index) {
+        List<String> plan = transactionTemplate.execute(status -> {
+            status.setRollbackOnly();
+            List<String> statements = CapturingStatementInspector.capture(() -> call(repositoryMethod));
+            assertEquals(1, statements.size(), repositoryMethod + " should run one statement: " + statements);
+            jdbcTemplate.execute("set local enable_seqscan = off");
+            return jdbcTemplate.queryForList("explain (generic_plan) " + numberParameters(statements.get(0)),
+                    String.class);
+        });
+        assertTrue(plan != null && plan.stream().anyMatch(line -> line.contains(index)),
+                repositoryMethod + " should use " + index + ", but the plan was: " + plan);
+    }
+
+    private void call(String repositoryMethod) {
+        switch (repositoryMethod) {
+            // same page as the list endpoints' default
+            case "findBasicByCreatedBy" -> jsonContentRepository.findBasicByCreatedBy(1L,
+                    PageRequest.of(0, 10, Sort.by("id")));
+            case "findUpperNamesByCreatedBy" -> jsonContentRepository.findUpperNamesByCreatedBy(1L,
+                    Set.of("TEST1", "TEST2"));
+            case "findByUserId" -> jwtTokenRepository.findByUserId(1L);
+            case "expireCreatedBefore" -> jwtTokenRepository.expireCreatedBefore(LocalDateTime.now().minusHours(10),
+                    5000);
+            case "findByTokenDigest" -> jwtTokenRepository.findByToken("token");
+            case "findByUsernameIgnoreCase" -> appUserRepository.findByUsernameIgnoreCase("admin");
+            default -> throw new IllegalArgumentException("Unknown repository method: " + repositoryMethod);
+        }
+    }
+
+    /**
+     * Replaces the JDBC placeholders of Hibernate's SQL by the numbered parameters PostgreSQL expects in a generic
+     * plan. Hibernate binds every value, so the statements have no literal that could contain a question mark.
+     */
+    private static String numberParameters(String sql) {
+        StringBuilder numbered = new StringBuilder();
+        int parameter = 0;
+        for (char c : sql.toCharArray()) {
+            if (c == '?') {
+                numbered.append('$').append(++parameter);
+            } else {
+                numbered.append(c);
+            }
+        }
+        return numbered.toString();
+    }
+
+    /**
+     * Records the SQL that Hibernate prepares on the current thread while {@link #capture(Runnable)} runs, so the
+     * scheduled tasks of the application don't mix their statements in.
+     */
+    public static class CapturingStatementInspector implements StatementInspector {
+        private static final ThreadLocal<List<String>> captured = new ThreadLocal<>();
+
+        static List<String> capture(Runnable work) {
+            List<String> statements = new ArrayList<>();
+            captured.set(statements);
+            try {
+                work.run();
+            } finally {
+                captured.remove();
+            }
+            return statements;
+        }
+
+        @Override
+        public String inspect(String sql) {
+            List<String> statements = captured.get();
+            if (statements != null) {
+                statements.add(sql);
+            }
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.duberlyguarnizo.dummyjson.query_budget;
+
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryBudgetFilterTest {
+    private final QueryBudgetFilter enforcingFilter = new QueryBudgetFilter(10, true);
+
+    @Test
+    @DisplayName("Requests within the budget of their endpoint pass")
+    void withinBudget() {
+        assertDoesNotThrow(() -> enforcingFilter.doFilter(requestTo("budgetOfTwo"), new MockHttpServletResponse(), runs(2)));
+    }
+
+    @Test
+    @DisplayName("Requests over the budget of their endpoint fail when the budget is enforced")
+    void overBudget() {
+        var exception = assertThrows(QueryBudgetExceededException.class,
+                () -> enforcingFilter.doFilter(requestTo("budgetOfTwo"), new MockHttpServletResponse(), runs(3)));
+        assertEquals("GET /api/v1/test (Endpoints#budgetOfTwo) ran 3 SQL statements, over its budget of 2",
+                exception.getMessage());
+        assertEquals(3, exception.getStatements());
+        assertEquals(2, exception.getBudget());
+    }
+
+    @Test
+    @DisplayName("Endpoints without @QueryBudget get the default budget, and over budget is only logged when not enforced")
+    void defaultBudget() {
+        assertThrows(QueryBudgetExceededException.class,
+                () -> enforcingFilter.doFilter(requestTo("noBudget"), new MockHttpServletResponse(), runs(11)));
+        var loggingFilter = new QueryBudgetFilter(10, false);
+        assertDoesNotThrow(() -> loggingFilter.doFilter(requestTo("noBudget"), new MockHttpServletResponse(), runs(11)));
+        assertEquals(0, SqlStatementCounter.current());
+    }
+
+    private static MockHttpServletRequest requestTo(String handlerMethod) throws NoSuchMethodException {
+        var request = new MockHttpServletRequest("GET", "/api/v1/test");
+        var handler = new HandlerMethod(new Endpoints(), Endpoints.class.getMethod(handlerMethod));
+        request.setAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE, handler);
+        return request;
+    }
+
+    /**
+     * Stands in for the rest of the chain, running the given number of statements.
+     */
+    private static FilterChain runs(int statements) {
+        return (request, response) -> {
+            for (int i = 0; i < statements; i++) {
+                SqlStatementCounter.increment();
+            }
+        };
+    }
+
+    static class Endpoints {
+        @QueryBudget(2)
+        public void budgetOfTwo() {
+        }
+
+        public void noBudget() {
+        }
+    }
+}
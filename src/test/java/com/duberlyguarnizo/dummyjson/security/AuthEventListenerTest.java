@@ -0,0 +1,145 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.duberlyguarnizo.dummyjson.security;
+
+import com.duberlyguarnizo.dummyjson.appuser.AppUser;
+import com.duberlyguarnizo.dummyjson.appuser.AppUserRepository;
+import com.duberlyguarnizo.dummyjson.appuser.AppUserRole;
+import com.duberlyguarnizo.dummyjson.jwt_token.RevokedTokenRegistry;
+import com.duberlyguarnizo.dummyjson.jwt_token.TokenEpochs;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Sends authentication events with {@code pg_notify} as another node would, and checks that the listener applies
+ * them to the local state through the real {@code LISTEN} connection.
+ */
+@SpringBootTest
+@Testcontainers
+class AuthEventListenerTest {
+    @Container
+    public static final PostgreSQLContainer<?> container = new PostgreSQLContainer<>(
+            "postgres:latest")
+            .withUsername("tc_user")
+            .withPassword("tc_password")
+            .withDatabaseName("tc_db");
+
+    @DynamicPropertySource
+    public static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", container::getJdbcUrl);
+        registry.add("spring.datasource.username", container::getUsername);
+        registry.add("spring.datasource.password", container::getPassword);
+        registry.add("spring.datasource.driver-class-name", container::getDriverClassName);
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private AuthEventPublisher publisher;
+    @Autowired
+    private RevokedTokenRegistry revokedTokens;
+    @Autowired
+    private TokenEpochs tokenEpochs;
+    @Autowired
+    private AppUserRepository appUserRepository;
+
+    @AfterEach
+    void destroy() {
+        appUserRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("An access token revoked on another node is revoked here")
+    void appliesTokenRevocations() {
+        long expiresAt = Instant.now().plus(5, ChronoUnit.MINUTES).toEpochMilli();
+        notifyAsOtherNode("""
+                {"origin":"other-node","type":"TOKEN_REVOKED","digest":"%s","expiresAt":%d}"""
+                .formatted(TokenDigests.sha256Hex("jwt-revoked-elsewhere"), expiresAt));
+
+        assertEventually(() -> revokedTokens.isRevoked("jwt-revoked-elsewhere"));
+    }
+
+    @Test
+    @DisplayName("A token epoch bumped on another node replaces the cached one")
+    void appliesEpochChanges() {
+        AppUser user = appUserRepository.save(AppUser.builder()
+                .names("Jhon Doe")
+                .idCard("987654321")
+                .email("doe@mail.com")
+                .active(true)
+                .username("jhondoe")
+                .password("not-used")
+                .role(AppUserRole.USER)
+                .build());
+        assertEquals(0, tokenEpochs.current(user.getId()));
+
+        notifyAsOtherNode("""
+                {"origin":"other-node","type":"EPOCH_CHANGED","userId":%d,"epoch":1}""".formatted(user.getId()));
+
+        assertEventually(() -> tokenEpochs.current(user.getId()) == 1);
+        assertFalse(tokenEpochs.isCurrent(user.getId(), 0));
+    }
+
+    @Test
+    @DisplayName("Events published by this node are skipped by its own listener")
+    void skipsOwnEvents() {
+        assertTrue(publisher.isEnabled());
+        publisher.tokenRevoked("jwt-revoked-here", Instant.now().plus(5, ChronoUnit.MINUTES));
+        notifyAsOtherNode("""
+                {"origin":"other-node","type":"TOKEN_REVOKED","digest":"%s","expiresAt":%d}"""
+                .formatted(TokenDigests.sha256Hex("marker"), Instant.now().plus(5, ChronoUnit.MINUTES).toEpochMilli()));
+
+        assertEventually(() -> revokedTokens.isRevoked("marker")); //notifications arrive in order
+        assertFalse(revokedTokens.isRevoked("jwt-revoked-here")); //the service revokes it locally, not the listener
+    }
+
+    private void notifyAsOtherNode(String payload) {
+        jdbcTemplate.queryForObject("select pg_notify(?, ?)", String.class, AuthEventPublisher.CHANNEL, payload);
+    }
+
+    private static void assertEventually(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "The event was not applied within 10 seconds");
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.duberlyguarnizo.dummyjson.security;
+
+import com.duberlyguarnizo.dummyjson.exceptions.ServerBusyException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedPasswordEncoderTest {
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(new BlockingEncoder(), 1, 1, Duration.ofSeconds(2));
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        encoder.shutdown();
+    }
+
+    @Test
+    @DisplayName("Hashes run on the hashing pool and the caller gets the result")
+    void delegatesToThePool() {
+        release.countDown();
+        assertEquals("hashed-secret", encoder.encode("secret"));
+        assertTrue(encoder.matches("secret", "hashed-secret"));
+        assertFalse(encoder.matches("other", "hashed-secret"));
+    }
+
+    @Test
+    @DisplayName("When the thread and the queue are taken, callers fail fast with ServerBusyException")
+    void rejectsWhenSaturated() throws Exception {
+        var running = CompletableFuture.supplyAsync(() -> encoder.encode("first"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        var queued = CompletableFuture.supplyAsync(() -> encoder.encode("second"));
+        while (encoder.queued() == 0) {
+            Thread.onSpinWait();
+        }
+
+        var exception = assertThrows(ServerBusyException.class, () -> encoder.matches("third", "hashed-third"));
+        assertEquals(Duration.ofSeconds(2), exception.getRetryAfter());
+
+        release.countDown();
+        assertEquals("hashed-first", running.get(5, TimeUnit.SECONDS));
+        assertEquals("hashed-second", queued.get(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Stands in for BCrypt: every call waits until the test releases it.
+     */
+    private class BlockingEncoder implements PasswordEncoder {
+        @Override
+        public String encode(CharSequence rawPassword) {
+            await();
+            return "hashed-" + rawPassword;
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            await();
+            return encodedPassword.equals("hashed-" + rawPassword);
+        }
+
+        private void await() {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -35,8 +35,7 @@ import org.testcontainers.containers.PostgreSQLContainer;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest
 @Testcontainers
@@ -98,6 +97,17 @@ class CustomUserDetailServiceTest {
         assertEquals(username, appUser.getUsername());
     }
 
+    @Test
+    @DisplayName("UserDetailService serves repeated loads from its cache until the user is evicted")
+    void testLoadUserByUsername_Cached() {
+        AppUser first = (AppUser) customUserDetailService.loadUserByUsername("jhondoe");
+
+        assertSame(first, customUserDetailService.loadUserByUsername("JhonDoe"));
+
+        customUserDetailService.evict("jhondoe");
+        assertNotSame(first, customUserDetailService.loadUserByUsername("jhondoe"));
+    }
+
     @Test
     @DisplayName("UserDetailService throws exception when loading a username that does not exist")
     void testLoadUserByUsername_NotFound() throws UsernameNotFoundException {
@@ -0,0 +1,216 @@
+/*
+ * dummy-json
+ * Copyright (c) 2023 Duberly Guarnizo Fuentes Rivera <duberlygfr@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.duberlyguarnizo.dummyjson.security;
+
+import com.duberlyguarnizo.dummyjson.appuser.AppUser;
+import com.duberlyguarnizo.dummyjson.appuser.AppUserRole;
+import com.duberlyguarnizo.dummyjson.jwt_token.JwtSigningKey;
+import com.duberlyguarnizo.dummyjson.jwt_token.JwtSigningKeyRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.UnsupportedJwtException;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import javax.crypto.SecretKey;
+import java.time.Duration;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class JwtUtilTest {
+    private static final String KEY = "kVgMq8Gt6xw2yN7bIn9AFMUbbLjt6F2knwCaV38cYKUhhhK4vp6CDLJLei34VfBB";
+    private static final String OTHER_KEY = "c2lnbmVkIHdpdGggYW5vdGhlciBrZXkgdGhhdCBpcyBsb25nIGVub3VnaCBmb3IgSFMyNTY=";
+    private static final SecretKey LEGACY_KEY = Keys.hmacShaKeyFor(Decoders.BASE64.decode(KEY));
+    private static final String KEK = "W+6+cS8sD5OI4UT/OfHdLlbEzTRWTREVCfGiwt/gtk0=";
+    private static final String OTHER_KEK = "bASzDmKdhbMaJLTXP2nD1/otyrLBdXcbN3ALzcBadB0=";
+    private VerifiedTokenCache cache;
+    private JwtUtil jwtUtil;
+    private final AppUser user = AppUser.builder().username("jhondoe").build();
+
+    @BeforeEach
+    void setUp() {
+        cache = new VerifiedTokenCache();
+        jwtUtil = new JwtUtil(KEY, cache, keyRing(Duration.ofDays(1)));
+    }
+
+    /**
+     * A key ring backed by an in-memory list instead of the jwt_signing_key table.
+     */
+    static JwtKeyRing keyRing(Duration rotationPeriod) {
+        return keyRing(repository(new ArrayList<>()), rotationPeriod, KEK);
+    }
+
+    static JwtKeyRing keyRing(JwtSigningKeyRepository repository, Duration rotationPeriod, String kek) {
+        JwtKeyRing keyRing = new JwtKeyRing(repository, new ObjectMapper(), true, rotationPeriod, "", kek);
+        keyRing.init();
+        return keyRing;
+    }
+
+    static JwtSigningKeyRepository repository(List<JwtSigningKey> table) {
+        JwtSigningKeyRepository repository = mock(JwtSigningKeyRepository.class);
+        when(repository.save(any())).thenAnswer(invocation -> {
+            table.add(invocation.getArgument(0));
+            return invocation.getArgument(0);
+        });
+        when(repository.findByCreatedDateAfterOrderByCreatedDateDesc(any())).thenAnswer(invocation -> table.stream()
+                .filter(k -> k.getCreatedDate().isAfter(invocation.getArgument(0)))
+                .sorted(Comparator.comparing(JwtSigningKey::getCreatedDate).reversed())
+                .toList());
+        return repository;
+    }
+
+    @Test
+    @DisplayName("A token is verified once and then served from the cache")
+    void verifiedClaimsAreCached() {
+        String jwt = jwtUtil.generateToken(user);
+
+        Claims first = jwtUtil.extractAllClaims(jwt);
+        Claims second = jwtUtil.extractAllClaims(jwt);
+
+        assertSame(first, second);
+        assertEquals(1, cache.size());
+        assertEquals("jhondoe", jwtUtil.extractUsername(jwt));
+        assertTrue(jwtUtil.validateToken(jwt, user));
+    }
+
+    @Test
+    @DisplayName("The principal is built from the user id and role claims")
+    void principalFromClaims() {
+        AppUser admin = AppUser.builder().id(7L).username("admin").role(AppUserRole.ADMIN).build();
+
+        JwtPrincipal principal = jwtUtil.extractPrincipal(jwtUtil.extractAllClaims(jwtUtil.generateToken(admin, 3)));
+
+        assertEquals(new JwtPrincipal(7L, "admin", AppUserRole.ADMIN), principal);
+        assertEquals(3, jwtUtil.extractTokenEpoch(jwtUtil.extractAllClaims(jwtUtil.generateToken(admin, 3))));
+        assertNull(jwtUtil.extractPrincipal(jwtUtil.extractAllClaims(jwtUtil.generateToken(user))),
+                "tokens without id and role claims need the user to be loaded");
+    }
+
+    @Test
+    @DisplayName("Tokens signed by another key ring are rejected and not cached")
+    void foreignTokenIsRejected() {
+        String jwt = new JwtUtil(OTHER_KEY, new VerifiedTokenCache(), keyRing(Duration.ofDays(1))).generateToken(user);
+
+        assertThrows(SignatureException.class, () -> jwtUtil.extractAllClaims(jwt));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    @DisplayName("Tokens signed before a key rotation keep verifying, and the JWK set publishes every key in use")
+    void rotatedKeysKeepVerifying() throws Exception {
+        JwtKeyRing keyRing = keyRing(Duration.ZERO); //every rotation creates a new key
+        JwtUtil util = new JwtUtil("", new VerifiedTokenCache(), keyRing);
+        String before = util.generateToken(user);
+        String oldKid = keyRing.signingKey().kid();
+
+        keyRing.rotate();
+
+        assertNotEquals(oldKid, keyRing.signingKey().kid());
+        assertEquals("jhondoe", util.extractUsername(before));
+        assertEquals("jhondoe", util.extractUsername(util.generateToken(user)));
+        @SuppressWarnings("unchecked")
+        var jwks = (List<Map<String, Object>>) keyRing.jwks().get("keys");
+        assertEquals(2, jwks.size());
+        for (Map<String, Object> jwk : jwks) {
+            assertEquals(keyRing.publicKey((String) jwk.get("kid")), EcJwks.fromJwk(jwk));
+        }
+    }
+
+    @Test
+    @DisplayName("Private keys are stored encrypted, and only nodes with the same KEK can load them")
+    void privateKeysAreEncrypted() {
+        List<JwtSigningKey> table = new ArrayList<>();
+        JwtSigningKeyRepository repository = repository(table);
+        JwtKeyRing first = keyRing(repository, Duration.ofDays(1), KEK);
+        String plain = Base64.getEncoder().encodeToString(first.signingKey().privateKey().getEncoded());
+
+        assertEquals(1, table.size());
+        assertNotEquals(plain, table.get(0).getEncryptedPrivateKey());
+        assertFalse(table.get(0).getEncryptedPrivateKey().contains(plain));
+
+        JwtKeyRing second = keyRing(repository, Duration.ofDays(1), KEK);
+        assertEquals(first.signingKey().kid(), second.signingKey().kid());
+        assertEquals(first.signingKey().privateKey(), second.signingKey().privateKey());
+        assertEquals(1, table.size(), "the second node signs with the stored key instead of creating one");
+
+        assertThrows(IllegalStateException.class, () -> keyRing(repository, Duration.ofDays(1), OTHER_KEK));
+        assertThrows(IllegalStateException.class, () -> keyRing(repository, Duration.ofDays(1), ""));
+    }
+
+    @Test
+    @DisplayName("A reload that fails on the database keeps the cached keys")
+    void databaseErrorKeepsCachedKeys() {
+        JwtSigningKeyRepository repository = repository(new ArrayList<>());
+        JwtKeyRing keyRing = keyRing(repository, Duration.ofDays(1), KEK);
+        JwtUtil util = new JwtUtil("", new VerifiedTokenCache(), keyRing);
+        String jwt = util.generateToken(user);
+        doThrow(new DataAccessResourceFailureException("connection refused"))
+                .when(repository).findByCreatedDateAfterOrderByCreatedDateDesc(any());
+
+        keyRing.rotate();
+
+        assertEquals("jhondoe", util.extractUsername(jwt));
+        assertNotNull(keyRing.publicKey(keyRing.signingKey().kid()));
+    }
+
+    @Test
+    @DisplayName("HS256 tokens are only accepted while the legacy key is configured")
+    void legacyTokensNeedTheLegacyKey() {
+        String legacy = Jwts.builder()
+                .setSubject("jhondoe")
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(LEGACY_KEY, SignatureAlgorithm.HS256)
+                .compact();
+
+        assertEquals("jhondoe", jwtUtil.extractUsername(legacy));
+        JwtUtil withoutLegacyKey = new JwtUtil("", new VerifiedTokenCache(), keyRing(Duration.ofDays(1)));
+        assertThrows(UnsupportedJwtException.class, () -> withoutLegacyKey.extractUsername(legacy));
+    }
+
+    @Test
+    @DisplayName("Expired tokens are rejected, even if their claims were cached")
+    void expiredTokenIsRejected() {
+        String jwt = jwtUtil.generateToken(user);
+        Claims claims = Jwts.claims().setSubject("jhondoe").setExpiration(new Date(System.currentTimeMillis() - 1000));
+        cache.put(jwt, claims);
+
+        assertNull(cache.get(jwt));
+        assertEquals(0, cache.size());
+
+        String expired = Jwts.builder()
+                .setSubject("jhondoe")
+                .setExpiration(new Date(System.currentTimeMillis() - 1000))
+                .signWith(LEGACY_KEY, SignatureAlgorithm.HS256)
+                .compact();
+        assertThrows(ExpiredJwtException.class, () -> jwtUtil.extractAllClaims(expired));
+    }
+}